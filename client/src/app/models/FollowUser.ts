@@ -0,0 +1,6 @@
+export interface FollowUser {
+  id: number;
+  username: string;
+  avatarUrl?: string;
+  followedAt: string;
+}
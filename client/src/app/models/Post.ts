@@ -8,6 +8,7 @@ export interface Post{
   image?: string;
   likes?: number;
   usersLiked?: LikedUser[];
+  likedByMe?: boolean;
   comments?: PostComment [];
   username?: string;
   createdAt?: string;
@@ -0,0 +1,7 @@
+export interface Relationship {
+  id: number;
+  username: string;
+  following: boolean;
+  followedBy: boolean;
+  closeFriend: boolean;
+}
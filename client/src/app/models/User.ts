@@ -6,4 +6,8 @@ export interface User{
   lastname: string;
   bio?: string| undefined;
   avatarUrl?: string;
+  followersCount?: number;
+  followingCount?: number;
+  postsCount?: number;
+  storiesCount?: number;
 }
@@ -1,5 +1,7 @@
 export interface UsersWithStory{
+  userId: number;
   username: string;
-  viewed: boolean;
+  hasUnseen: boolean;
   avatarUrl: string;
+  latestStoryAt: string;
 }
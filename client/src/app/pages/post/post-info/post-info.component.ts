@@ -73,7 +73,7 @@ export class PostInfoComponent implements OnInit, OnDestroy {
 
   ngOnInit(): void {
     const usersLiked = this.data.post.usersLiked ?? [];
-    this.data.post.isLiked = usersLiked.some(u => u.username === this.meUsername);
+    this.data.post.isLiked = this.data.post.likedByMe ?? usersLiked.some(u => u.username === this.meUsername);
 
     // 2. ДОБАВЛЕНО: Получаем аватар текущего юзера для оптимистичного лайка
     this.userService.getCurrentUser().pipe(takeUntil(this.destroy$)).subscribe(user => {
@@ -121,6 +121,7 @@ export class PostInfoComponent implements OnInit, OnDestroy {
       next: (updatedPost: Post) => {
         // Синхронизируем данные с ответом сервера
         post.usersLiked = updatedPost.usersLiked;
+        post.likes = updatedPost.likes;
         this.cd.markForCheck();
       },
       error: (err) => {
@@ -1,9 +1,9 @@
 import { ChangeDetectorRef, Component, inject, Inject, OnDestroy, OnInit } from '@angular/core';
-import { Subject, takeUntil, switchMap, of } from 'rxjs';
+import { Subject, takeUntil, switchMap, of, map } from 'rxjs';
 import { MatIconButton } from "@angular/material/button";
 import { CommonModule, NgForOf, NgIf } from "@angular/common";
 import { MatIcon } from '@angular/material/icon';
-import { User } from '../../../models/User';
+import { FollowUser } from '../../../models/FollowUser';
 import { UserService } from '../../../services/user.service';
 import { MAT_DIALOG_DATA, MatDialogRef } from '@angular/material/dialog';
 import { RouterLink } from '@angular/router';
@@ -33,7 +33,10 @@ export class FollowingComponent implements OnInit, OnDestroy {
   private userService = inject(UserService);
 
   // Используем обычный массив, чтобы избежать двойных запросов (async pipe + subscribe)
-  users: User[] = [];
+  users: FollowUser[] = [];
+  // курсор следующей страницы, null - страниц больше нет
+  nextCursor: string | null = null;
+  loading = false;
 
   isFollowingMap: { [username: string]: boolean } = {};
   meUsername!: string | null;
@@ -45,32 +48,46 @@ export class FollowingComponent implements OnInit, OnDestroy {
 
   ngOnInit(): void {
     this.meUsername = this.tokenService.getUsernameFromToken();
+    this.loadPage(null);
+  }
+
+  loadMore(): void {
+    if (this.nextCursor && !this.loading) {
+      this.loadPage(this.nextCursor);
+    }
+  }
 
+  private loadPage(cursor: string | null): void {
+    this.loading = true;
     // 1. Выбираем, какой запрос делать
     const request$ = this.data.followers
-      ? this.userService.getFollowers(this.data.username)
-      : this.userService.getFollowing(this.data.username);
+      ? this.userService.getFollowersPage(this.data.username, cursor)
+      : this.userService.getFollowingPage(this.data.username, cursor);
 
     request$
       .pipe(
         takeUntil(this.destroy$),
-        switchMap(usersData => {
-          this.users = usersData.map(u => ({
+        switchMap(page => {
+          const pageUsers = page.items.map(u => ({
             ...u,
             avatarUrl: this.imageService.getProfileImageUrl(u.avatarUrl)
           }));
+          this.users = [...this.users, ...pageUsers];
+          this.nextCursor = page.nextCursor;
 
-          const usernames = this.users.map(u => u.username);
+          const usernames = pageUsers.map(u => u.username);
 
-          // 3. Если список пуст, возвращаем пустой объект, иначе запрашиваем подписки
+          // 3. Если страница пуста, возвращаем пустой объект, иначе запрашиваем подписки
           if (usernames.length === 0) {
             return of({});
           }
           return this.userService.isFollowingBatch(usernames);
-        })
+        }),
+        map(following => ({ ...this.isFollowingMap, ...following }))
       )
-      .subscribe(map => {
-        this.isFollowingMap = map;
+      .subscribe(following => {
+        this.isFollowingMap = following;
+        this.loading = false;
         this.cd.markForCheck();
       });
   }
@@ -80,7 +97,7 @@ export class FollowingComponent implements OnInit, OnDestroy {
     this.destroy$.complete();
   }
 
-  trackByUsername(index: number, user: User) {
+  trackByUsername(index: number, user: FollowUser) {
     return user.username;
   }
 
@@ -2,7 +2,8 @@ import {ChangeDetectorRef, Component, inject, Inject, OnDestroy, OnInit} from '@
 import { AsyncPipe, NgForOf, NgIf } from "@angular/common";
 import { MatIconButton } from "@angular/material/button";
 import { User } from '../../../models/User';
-import { forkJoin, map, Observable, of, Subject, switchMap, takeUntil } from 'rxjs';
+import { Relationship } from '../../../models/Relationship';
+import { map, Observable, of, Subject, switchMap, takeUntil } from 'rxjs';
 import { UserService } from '../../../services/user.service';
 import { MAT_DIALOG_DATA, MatDialogRef } from '@angular/material/dialog';
 import { ImageUploadService } from '../../../services/image-upload.service';
@@ -65,30 +66,24 @@ export class FriendsComponent implements OnInit, OnDestroy {
 
       switchMap(users => {
         if (users.length === 0) {
-          // Возвращаем структуру, совместимую с forkJoin
-          return of({ users: [], isFollowingMap: {}, allFriendUsernames: [] });
+          return of({ users: [] as User[], relationships: [] as Relationship[] });
         }
 
-        const usernames = users.map(u => u.username);
-
-        // Удалили вызов loadUserImage (это теперь делается синхронно ниже)
-
-        const followingBatch$ = this.userService.isFollowingBatch(usernames);
-
-        const allFriendsUsernames$ = this.friendsService.getFriends().pipe(
-          map(result => (Array.isArray(result) ? result : []) as string[])
+        // подписка и близкие друзья одним запросом
+        return this.userService.getRelationships(users.map(u => u.username)).pipe(
+          map(relationships => ({ users, relationships }))
         );
-
-        return forkJoin({
-          users: of(users),
-          isFollowingMap: followingBatch$,
-          allFriendUsernames: allFriendsUsernames$
-        });
       }),
 
-      map(({ users, isFollowingMap, allFriendUsernames }) => {
-        this.isFollowingMap = isFollowingMap || {};
-        const friendSet = new Set(allFriendUsernames || []);
+      map(({ users, relationships }) => {
+        this.isFollowingMap = {};
+        const friendSet = new Set<string>();
+        relationships.forEach(r => {
+          this.isFollowingMap[r.username] = r.following;
+          if (r.closeFriend) {
+            friendSet.add(r.username);
+          }
+        });
 
         // Маппим пользователей в UI-модель
         const usersWithStatus = users.map(user => ({
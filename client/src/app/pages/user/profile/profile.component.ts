@@ -144,10 +144,8 @@ export class ProfileComponent implements OnInit, OnDestroy {
         this.checkHasStory(user.username);
 
         // Убрали imageService.getImageToUser из forkJoin, так как теперь это не запрос
+        // счетчики приходят вместе с профилем, отдельно грузим только статус подписки
         return forkJoin({
-          followers: this.userService.getFollowers(profileUsername),
-          following: this.userService.getFollowing(profileUsername),
-          posts: this.postService.getPostForUser(profileUsername),
           isFollow: this.userService.isFollow(profileUsername)
         });
       })
@@ -164,9 +162,9 @@ export class ProfileComponent implements OnInit, OnDestroy {
       this.userProfileImage = 'assets/placeholder.jpg';
     }
 
-    this.followersCount = data.followers?.length ?? 0;
-    this.followingCount = data.following?.length ?? 0;
-    this.postsCount = Array.isArray(data.posts) ? data.posts.length : 0;
+    this.followersCount = this.user?.followersCount ?? 0;
+    this.followingCount = this.user?.followingCount ?? 0;
+    this.postsCount = this.user?.postsCount ?? 0;
     this.isFollow = data.isFollow ?? false;
   }
 
@@ -93,7 +93,7 @@ export class PostService {
           image: imgUrl,
           commentCount: count,
           usersLiked: safeLikes,
-          isLiked: meUsername ? safeLikes.some(u => u.username === meUsername) : false
+          isLiked: post.likedByMe ?? (meUsername ? safeLikes.some(u => u.username === meUsername) : false)
         } as UiPost;
       })
     );
@@ -218,7 +218,7 @@ export class PostService {
               ...post,
               ...updatedPostFromServer,
               usersLiked: newLikes,
-              isLiked: newLikes.some(u => u.username === username)
+              isLiked: updatedPostFromServer.likedByMe ?? newLikes.some(u => u.username === username)
             } as UiPost;
           }
           return post;
@@ -2,6 +2,9 @@ import {Injectable} from '@angular/core';
 import {HttpClient} from '@angular/common/http';
 import {BehaviorSubject, Observable, Subject} from 'rxjs';
 import {User} from '../models/User';
+import {Relationship} from '../models/Relationship';
+import {FollowUser} from '../models/FollowUser';
+import {CursorPage} from '../models/CursorPage';
 
 const USER_API = 'http://localhost:8080/api/user/';
 
@@ -41,6 +44,16 @@ export class UserService {
     return this.http.get<User[]>(USER_API+username+'/following');
   }
 
+  getFollowersPage(username: string, cursor: string | null, size = 20): Observable<CursorPage<FollowUser>> {
+    return this.http.get<CursorPage<FollowUser>>(USER_API + username + '/followers/page', {params: this.pageParams(cursor, size)});
+  }
+  getFollowingPage(username: string, cursor: string | null, size = 20): Observable<CursorPage<FollowUser>> {
+    return this.http.get<CursorPage<FollowUser>>(USER_API + username + '/following/page', {params: this.pageParams(cursor, size)});
+  }
+  private pageParams(cursor: string | null, size: number): {[param: string]: string} {
+    return cursor ? {cursor, size: String(size)} : {size: String(size)};
+  }
+
   search(username: string | null): Observable<User[]> {
     return this.http.get<User[]>(USER_API+'search/'+username);
   }
@@ -58,4 +71,7 @@ export class UserService {
     return this.http.post<{ [username: string]: boolean }>(USER_API+
       'isFollowingBatch',usernames);
   }
+  getRelationships(usernames: string[]): Observable<Relationship[]> {
+    return this.http.post<Relationship[]>(USER_API + 'relationships', {usernames});
+  }
 }
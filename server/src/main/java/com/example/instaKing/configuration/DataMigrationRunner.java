@@ -0,0 +1,124 @@
+package com.example.instaKing.configuration;
+
+import com.example.instaKing.services.UserStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Одноразовые миграции данных поверх схемы, которую создает hibernate ddl-auto.
+ * Примененные миграции записываются в app_migration и больше не запускаются.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class DataMigrationRunner implements ApplicationRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public DataMigrationRunner(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS app_migration (" +
+                "name varchar(255) PRIMARY KEY, applied_at timestamp NOT NULL)");
+
+        apply("001-post-like-from-liked-user", this::moveLikedUsersToPostLike);
+        apply("002-post-favorites-count", this::countPostFavorites);
+        apply("003-post-comment-count", this::countPostComments);
+        apply("004-user-stats", () -> jdbcTemplate.update(UserStatsService.RECONCILE));
+        apply("005-user-following-followed-at", this::addFollowedAt);
+        apply("006-story-view-unique", this::uniqueStoryViews);
+        apply("007-drop-post-liked-user", this::dropPostLikedUser);
+        apply("008-story-view-unique-constraint", this::storyViewUniqueConstraint);
+    }
+
+    private void apply(String name, Runnable migration) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Integer applied = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM app_migration WHERE name = ?", Integer.class, name);
+            if (applied != null && applied > 0) {
+                return;
+            }
+            migration.run();
+            jdbcTemplate.update("INSERT INTO app_migration (name, applied_at) VALUES (?, now())", name);
+            log.info("Data migration {} applied", name);
+        });
+    }
+
+    private boolean tableExists(String table) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM information_schema.tables WHERE table_name = ?", Integer.class, table);
+        return count != null && count > 0;
+    }
+
+    // Post.likedUser (@ElementCollection с username) -> post_like (post_id, user_id)
+    private void moveLikedUsersToPostLike() {
+        if (!tableExists("post_liked_user")) {
+            return;
+        }
+        jdbcTemplate.update("INSERT INTO post_like (post_id, user_id, created_at) " +
+                "SELECT plu.post_id, u.id, now() FROM post_liked_user plu JOIN users u ON u.username = plu.liked_user " +
+                "ON CONFLICT (post_id, user_id) DO NOTHING");
+        jdbcTemplate.update("UPDATE post p SET likes = (SELECT count(*) FROM post_like pl WHERE pl.post_id = p.id)");
+    }
+
+    // Лайки перенесены в post_like (001). Старую таблицу @ElementCollection hibernate больше не ведет,
+    // а ее внешний ключ на post не дает удалить пост с прежними лайками; ddl-auto ее не удалит
+    private void dropPostLikedUser() {
+        if (tableExists("post_liked_user")) {
+            jdbcTemplate.execute("DROP TABLE post_liked_user");
+        }
+    }
+
+    // Новый счетчик post.favorites заполняем по таблице favorite
+    private void countPostFavorites() {
+        jdbcTemplate.update("UPDATE post p SET favorites = (SELECT count(*) FROM favorite f WHERE f.post_id = p.id)");
+    }
+
+    private void countPostComments() {
+        jdbcTemplate.update("UPDATE post p SET comment_count = (SELECT count(*) FROM comment c WHERE c.post_id = p.id)");
+    }
+
+    // Время подписки для постраничных списков; старым подпискам достается время миграции
+    private void addFollowedAt() {
+        jdbcTemplate.execute("ALTER TABLE user_following ADD COLUMN IF NOT EXISTS followed_at timestamp NOT NULL DEFAULT now()");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS ix_user_following_follower_followed " +
+                "ON user_following (follower_id, followed_at DESC, following_id DESC)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS ix_user_following_following_followed " +
+                "ON user_following (following_id, followed_at DESC, follower_id DESC)");
+    }
+
+    // Повторные просмотры одного зрителя удаляются, дальше их не пустит уникальное ограничение;
+    // неуникальный индекс на тех же колонках больше не нужен, story.views пересчитывается
+    private void uniqueStoryViews() {
+        storyViewUniqueConstraint();
+        jdbcTemplate.execute("DROP INDEX IF EXISTS ix_story_view_story_user");
+        jdbcTemplate.update("UPDATE story s SET views = (SELECT count(*) FROM story_view v WHERE v.story_id = s.id)");
+    }
+
+    // Ограничение с именем из @UniqueConstraint в StoryView. Hibernate создает его сам на новой таблице,
+    // на старой его ALTER падает на дубликатах. Первая версия 006 создавала уникальный индекс
+    // с тем же именем - он заменяется ограничением
+    private void storyViewUniqueConstraint() {
+        Integer constraints = jdbcTemplate.queryForObject("SELECT count(*) FROM information_schema.table_constraints " +
+                "WHERE table_name = 'story_view' AND constraint_name = 'uk_story_view_story_user' " +
+                "AND constraint_type = 'UNIQUE'", Integer.class);
+        if (constraints != null && constraints > 0) {
+            return;
+        }
+        jdbcTemplate.update("DELETE FROM story_view WHERE id NOT IN " +
+                "(SELECT min(id) FROM story_view GROUP BY story_id, user_id)");
+        jdbcTemplate.execute("DROP INDEX IF EXISTS uk_story_view_story_user");
+        jdbcTemplate.execute("ALTER TABLE story_view ADD CONSTRAINT uk_story_view_story_user UNIQUE (story_id, user_id)");
+    }
+}
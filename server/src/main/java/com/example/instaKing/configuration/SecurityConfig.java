@@ -5,7 +5,11 @@ import com.example.instaKing.security.JWTAuthenticationFilter;
 import com.example.instaKing.security.JWTTokenProvider;
 import com.example.instaKing.security.SecurityConstants;
 import com.example.instaKing.services.CustomUserDetailsService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.boot.web.servlet.filter.OrderedHiddenHttpMethodFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -38,15 +42,18 @@ public class SecurityConfig {
     private final CustomUserDetailsService customUserDetailsService;
     private final JWTAuthenticationFilter jwtAuthenticationFilter;
     private final JWTTokenProvider jwtTokenProvider;
+    private final UploadLimitFilter uploadLimitFilter;
 
     @Autowired
     public SecurityConfig(JWTAuthenticationEntryPoint jwtAuthenticationEntryPoint,
                           CustomUserDetailsService customUserDetailsService,
-                          JWTAuthenticationFilter jwtAuthenticationFilter, JWTTokenProvider jwtTokenProvider) {
+                          JWTAuthenticationFilter jwtAuthenticationFilter, JWTTokenProvider jwtTokenProvider,
+                          UploadLimitFilter uploadLimitFilter) {
         this.jwtAuthenticationEntryPoint = jwtAuthenticationEntryPoint;
         this.customUserDetailsService = customUserDetailsService;
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
         this.jwtTokenProvider = jwtTokenProvider;
+        this.uploadLimitFilter = uploadLimitFilter;
     }
 
     @Bean
@@ -62,7 +69,8 @@ public class SecurityConfig {
                                 "/images/**"
                         ).permitAll()
                         .anyRequest().authenticated())
-                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+                .addFilterAfter(uploadLimitFilter, JWTAuthenticationFilter.class);
 
         return http.build();
     }
@@ -77,6 +85,26 @@ public class SecurityConfig {
         return new JWTAuthenticationFilter(jwtTokenProvider, customUserDetailsService);
     }
 
+    // UploadLimitFilter работает только внутри цепочки security, после проверки токена
+    @Bean
+    public FilterRegistrationBean<UploadLimitFilter> uploadLimitFilterRegistration(UploadLimitFilter filter) {
+        FilterRegistrationBean<UploadLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
+    // Стандартный фильтр читает _method из параметров и тем самым разбирает multipart-тело до security
+    @Bean
+    @ConditionalOnProperty(prefix = "spring.mvc.hiddenmethod.filter", name = "enabled")
+    public OrderedHiddenHttpMethodFilter hiddenHttpMethodFilter() {
+        return new OrderedHiddenHttpMethodFilter() {
+            @Override
+            protected boolean shouldNotFilter(HttpServletRequest request) {
+                return UploadLimitFilter.isMultipart(request);
+            }
+        };
+    }
+
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration config = new CorsConfiguration();
@@ -0,0 +1,74 @@
+package com.example.instaKing.configuration;
+
+import com.example.instaKing.security.JWTAuthenticationEntryPoint;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.InsufficientAuthenticationException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Ограничение одновременных multipart-загрузок (app.upload.max-concurrent).
+ * Стоит в цепочке security сразу после JWTAuthenticationFilter: анонимный запрос получает 401
+ * и не занимает разрешение, сверх лимита - 503. Тело до этого места не читается:
+ * HiddenHttpMethodFilter multipart-запросы пропускает (см. SecurityConfig).
+ */
+@Slf4j
+@Component
+public class UploadLimitFilter extends OncePerRequestFilter {
+
+    private final Semaphore permits;
+    private final JWTAuthenticationEntryPoint authenticationEntryPoint;
+
+    public UploadLimitFilter(@Value("${app.upload.max-concurrent:8}") int maxConcurrent,
+                             JWTAuthenticationEntryPoint authenticationEntryPoint) {
+        this.permits = new Semaphore(maxConcurrent);
+        this.authenticationEntryPoint = authenticationEntryPoint;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            authenticationEntryPoint.commence(request, response,
+                    new InsufficientAuthenticationException("Upload requires authentication"));
+            return;
+        }
+        if (!permits.tryAcquire()) {
+            log.warn("Upload rejected: too many concurrent uploads ({})", request.getRequestURI());
+            response.setContentType("application/json;charset=UTF-8");
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader(HttpHeaders.RETRY_AFTER, "5");
+            response.getWriter().write("{\"error\": \"Слишком много загрузок, попробуйте позже\"}");
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !isMultipart(request);
+    }
+
+    static boolean isMultipart(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType != null && contentType.toLowerCase().startsWith("multipart/");
+    }
+}
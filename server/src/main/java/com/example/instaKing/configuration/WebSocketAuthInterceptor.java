@@ -1,9 +1,11 @@
 package com.example.instaKing.configuration;
 
 import com.example.instaKing.models.User;
+import com.example.instaKing.security.CurrentUser;
 import com.example.instaKing.security.JWTTokenProvider;
 import com.example.instaKing.security.SecurityConstants;
 import com.example.instaKing.services.CustomUserDetailsService;
+import io.jsonwebtoken.Claims;
 import org.hibernate.tool.schema.internal.exec.ScriptTargetOutputToFile;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.Message;
@@ -57,12 +59,16 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
 
             if (jwt != null) {
                 try {
-                    if (tokenProvider.validateToken(jwt, false, SecurityConstants.ACCESS_SECRET)) {
-                        Long userId = tokenProvider.getUserIdFromToken(jwt, false, SecurityConstants.ACCESS_SECRET);
-                        UserDetails userDetails = customUserDetailsService.loadUserById(userId);
+                    Claims claims = tokenProvider.parseToken(jwt, false, SecurityConstants.ACCESS_SECRET);
+                    if (claims != null) {
+                        CurrentUser currentUser = tokenProvider.getCurrentUser(claims);
+                        if (currentUser == null) {
+                            Long userId = Long.parseLong(String.valueOf(claims.get("userId")));
+                            currentUser = customUserDetailsService.loadCurrentUserById(userId);
+                        }
 
                         UsernamePasswordAuthenticationToken authentication =
-                                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                                new UsernamePasswordAuthenticationToken(currentUser, null, currentUser.authorities());
 
                         accessor.setUser(authentication);
 
@@ -1,11 +1,11 @@
 package com.example.instaKing.controllers;
 
-import com.example.instaKing.models.User;
 import com.example.instaKing.payload.request.LoginRequest;
 import com.example.instaKing.payload.request.SignUpRequest;
 import com.example.instaKing.payload.response.MessageResponse;
 import com.example.instaKing.security.JWTTokenProvider;
 import com.example.instaKing.security.SecurityConstants;
+import com.example.instaKing.services.CustomUserDetailsService;
 import com.example.instaKing.services.UserService;
 import com.example.instaKing.validators.PersonValidator;
 import com.example.instaKing.validators.ResponseErrorValidator;
@@ -17,6 +17,7 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.util.ObjectUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
@@ -34,14 +35,16 @@ public class AuthController {
     private final AuthenticationManager authenticationManager;
     private final JWTTokenProvider jwtTokenProvider;
     private final PersonValidator personValidator;
+    private final CustomUserDetailsService customUserDetailsService;
 
     @Autowired
-    public AuthController(ResponseErrorValidator responseErrorValidator, UserService userService, AuthenticationManager authenticationManager, JWTTokenProvider jwtTokenProvider, PersonValidator personValidator) {
+    public AuthController(ResponseErrorValidator responseErrorValidator, UserService userService, AuthenticationManager authenticationManager, JWTTokenProvider jwtTokenProvider, PersonValidator personValidator, CustomUserDetailsService customUserDetailsService) {
         this.responseErrorValidator = responseErrorValidator;
         this.userService = userService;
         this.authenticationManager = authenticationManager;
         this.jwtTokenProvider = jwtTokenProvider;
         this.personValidator = personValidator;
+        this.customUserDetailsService = customUserDetailsService;
     }
 
     @PostMapping("/signup")
@@ -82,7 +85,8 @@ public class AuthController {
         }
 
         Long userId = jwtTokenProvider.getUserIdFromToken(refreshToken,true,SecurityConstants.REFRESH_SECRET);
-        User user = userService.getUserById(userId);
+        // с ролями: они попадают в claims нового access-токена
+        UserDetails user = customUserDetailsService.loadUserById(userId);
 
         Authentication authentication = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
         String newAccessToken = jwtTokenProvider.generateAccessToken(authentication);
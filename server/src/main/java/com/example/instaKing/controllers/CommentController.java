@@ -1,7 +1,9 @@
 package com.example.instaKing.controllers;
 
 import com.example.instaKing.dto.CommentDTO;
+import com.example.instaKing.payload.request.PageCursor;
 import com.example.instaKing.payload.response.CommentPageResponse;
+import com.example.instaKing.payload.response.CursorPageResponse;
 import com.example.instaKing.facade.CommentFacade;
 import com.example.instaKing.models.Comment;
 import com.example.instaKing.payload.response.MessageResponse;
@@ -21,7 +23,6 @@ import org.springframework.web.bind.annotation.*;
 
 import java.security.Principal;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/comment")
@@ -56,10 +57,8 @@ public class CommentController {
 
     @GetMapping("/{postId}/all")
     public ResponseEntity<List<CommentDTO>> getAllComments(@PathVariable("postId") String postId) {
-        List<CommentDTO> commentsDTOList = commentService.getAllCommentForPost(Long.parseLong(postId))
-                .stream()
-                .map(commentFacade::CommentToCommentDTO)
-                .collect(Collectors.toList());
+        List<CommentDTO> commentsDTOList = commentFacade.commentsToCommentDTOs(
+                commentService.getAllCommentForPost(Long.parseLong(postId)));
 
         return new ResponseEntity<>(commentsDTOList, HttpStatus.OK);
     }
@@ -80,10 +79,7 @@ public class CommentController {
     public ResponseEntity<CommentPageResponse> getPosts(@RequestParam int page, @RequestParam int size,
                                                      @PathVariable("postId") String postId) {
         Page<Comment> commentPage = (Page<Comment>) commentService.getComments(Long.parseLong(postId), page, size);
-        List<CommentDTO> commentsDTO = commentPage.getContent()
-                .stream()
-                .map(commentFacade::CommentToCommentDTO)
-                .collect(Collectors.toList());
+        List<CommentDTO> commentsDTO = commentFacade.commentsToCommentDTOs(commentPage.getContent());
 
         CommentPageResponse response = new CommentPageResponse(
                 commentsDTO,
@@ -95,4 +91,19 @@ public class CommentController {
 
         return ResponseEntity.ok(response);
     }
+
+    @GetMapping("{postId}/comments/cursor")
+    public ResponseEntity<CursorPageResponse<CommentDTO>> getCommentsByCursor(@PathVariable("postId") String postId,
+                                                                              @RequestParam(required = false) String cursor,
+                                                                              @RequestParam(defaultValue = "20") int size) {
+        int pageSize = PageCursor.pageSize(size);
+        List<Comment> comments = commentService.getCommentsBefore(Long.parseLong(postId), PageCursor.decode(cursor), pageSize);
+        CursorPageResponse<CommentDTO> response = CursorPageResponse.of(
+                comments,
+                pageSize,
+                commentFacade::commentsToCommentDTOs,
+                c -> new PageCursor(c.getCreatedDate(), c.getId())
+        );
+        return ResponseEntity.ok(response);
+    }
 }
@@ -10,6 +10,8 @@ import com.example.instaKing.facade.UserFacade;
 import com.example.instaKing.models.Conversation;
 import com.example.instaKing.models.Message;
 import com.example.instaKing.models.User;
+import com.example.instaKing.payload.request.PageCursor;
+import com.example.instaKing.payload.response.CursorPageResponse;
 import com.example.instaKing.services.ChatService;
 import com.example.instaKing.services.UserService;
 import lombok.RequiredArgsConstructor;
@@ -97,4 +99,26 @@ public class DialogController {
                 .collect(Collectors.toList());
     }
 
+    @GetMapping("/{conversationId}/messages/cursor")
+    public CursorPageResponse<MessageDTO> getConversationHistoryByCursor(
+            @PathVariable Long conversationId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size,
+            Principal principal) {
+
+        boolean isParticipant = chatService.isUserParticipant(conversationId, principal.getName());
+        if (!isParticipant) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Вы не участник этого чата");
+        }
+
+        int pageSize = PageCursor.pageSize(size);
+        List<Message> messages = chatService.getMessageHistoryBefore(conversationId, PageCursor.decode(cursor), pageSize);
+        return CursorPageResponse.of(
+                messages,
+                pageSize,
+                page -> page.stream().map(MessageMapper::toDTO).collect(Collectors.toList()),
+                m -> new PageCursor(m.getCreatedAt(), m.getId())
+        );
+    }
+
 }
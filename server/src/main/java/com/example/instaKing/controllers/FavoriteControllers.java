@@ -48,10 +48,7 @@ public class FavoriteControllers {
     @GetMapping()
     public ResponseEntity<List<PostDTO>> getFavorites(Principal principal) {
         User user = userService.getCurrentUser(principal);
-        List<PostDTO> postDTO=favoriteService.getFavorites(user.getId())
-                .stream()
-                .map(post->postFacade.postToPostDTO(post,user))
-                .toList();
+        List<PostDTO> postDTO = postFacade.postsToPostDTOs(favoriteService.getFavorites(user.getId()), user);
         return ResponseEntity.ok(postDTO);
     }
 
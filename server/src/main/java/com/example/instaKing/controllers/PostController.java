@@ -1,28 +1,41 @@
 package com.example.instaKing.controllers;
 
+import com.example.instaKing.dto.LikedUserDTO;
 import com.example.instaKing.dto.PostDTO;
+import com.example.instaKing.dto.PostJson;
+import com.example.instaKing.payload.request.PageCursor;
+import com.example.instaKing.payload.request.SearchCursor;
+import com.example.instaKing.payload.response.CursorPageResponse;
+import com.example.instaKing.payload.response.FeedResponse;
 import com.example.instaKing.payload.response.PostPageResponse;
 import com.example.instaKing.facade.Facade;
 import com.example.instaKing.facade.PostFacade;
 import com.example.instaKing.models.Post;
+import com.example.instaKing.models.PostLike;
 import com.example.instaKing.models.User;
 import com.example.instaKing.payload.response.MessageResponse;
 import com.example.instaKing.services.FavoriteService;
+import com.example.instaKing.services.PostSearchIndex;
 import com.example.instaKing.services.PostService;
+import com.example.instaKing.services.TimelineService;
 import com.example.instaKing.services.UserService;
 import com.example.instaKing.validators.ResponseErrorValidator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.ObjectUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.security.Principal;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("api/post")
@@ -35,14 +48,19 @@ public class PostController {
     private final UserService userService;
     private final PostFacade postFacade;
     private final Facade facade;
+    private final ObjectMapper objectMapper;
+
+    private static final int STREAM_CHUNK_SIZE = 100;
+
     @Autowired
-    public PostController(PostService postService, ResponseErrorValidator responseErrorValidator, FavoriteService favoriteService, UserService userService, PostFacade postFacade, Facade facade) {
+    public PostController(PostService postService, ResponseErrorValidator responseErrorValidator, FavoriteService favoriteService, UserService userService, PostFacade postFacade, Facade facade, ObjectMapper objectMapper) {
         this.postService = postService;
         this.responseErrorValidator = responseErrorValidator;
         this.favoriteService = favoriteService;
         this.userService = userService;
         this.postFacade = postFacade;
         this.facade = facade;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping("/create")
@@ -59,24 +77,26 @@ public class PostController {
     }
 
     @GetMapping("/all")
-    public ResponseEntity<List<PostDTO>> getAllPosts(Principal principal) {
+    public ResponseEntity<List<PostJson>> getAllPosts(Principal principal) {
         User currentUser=userService.getCurrentUser(principal);
-        List<PostDTO> postsDTO = postService.getAllPosts()
-                .stream()
-                .map(post->postFacade.postToPostDTO(post,currentUser))
-                .collect(Collectors.toList());
+        List<PostJson> postsDTO = postFacade.postsToPostJson(postService.getAllPosts(), currentUser);
 
         return new ResponseEntity<>(postsDTO, HttpStatus.OK);
     }
 
+    @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllPosts(Principal principal) {
+        User currentUser = userService.getCurrentUser(principal);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(streamPosts(null, currentUser));
+    }
+
     @GetMapping("/posts")
     public ResponseEntity<PostPageResponse> getPosts(@RequestParam int page,@RequestParam int size,Principal principal) {
         Page<Post> postPage = (Page<Post>) postService.getPosts( page, size);
         User currentUser=userService.getCurrentUser(principal);
-        List<PostDTO> postsDTO=postPage.getContent().
-                stream()
-                .map(p->postFacade.postToPostDTO(p,currentUser))
-                .collect(Collectors.toList());
+        List<PostJson> postsDTO = postFacade.postsToPostJson(postPage.getContent(), currentUser);
         PostPageResponse response=new PostPageResponse(
                 postsDTO,
                 postPage.getTotalElements(),
@@ -89,29 +109,110 @@ public class PostController {
     }
 
 
+    @GetMapping("/posts/cursor")
+    public ResponseEntity<CursorPageResponse<PostJson>> getPostsByCursor(@RequestParam(required = false) String cursor,
+                                                                         @RequestParam(defaultValue = "20") int size,
+                                                                         Principal principal) {
+        int pageSize = PageCursor.pageSize(size);
+        List<Post> posts = postService.getPostsBefore(PageCursor.decode(cursor), pageSize);
+        User currentUser = userService.getCurrentUser(principal);
+        CursorPageResponse<PostJson> response = CursorPageResponse.of(
+                posts,
+                pageSize,
+                page -> postFacade.postsToPostJson(page, currentUser),
+                p -> new PageCursor(p.getCreatedAt(), p.getId())
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    @GetMapping("/feed")
+    public ResponseEntity<FeedResponse> getFeed(@RequestParam(required = false) Long cursor,
+                                                @RequestParam(defaultValue = "20") int size,
+                                                Principal principal) {
+        User currentUser = userService.getCurrentUser(principal);
+        TimelineService.FeedSlice slice = postService.getFeed(principal, cursor, size);
+        List<PostJson> postsDTO = postFacade.postsToPostJson(slice.posts(), currentUser);
+        return new ResponseEntity<>(new FeedResponse(postsDTO, slice.nextCursor()), HttpStatus.OK);
+    }
+
+    @GetMapping("/explore")
+    public ResponseEntity<List<PostJson>> getExplore(@RequestParam(defaultValue = "0") int page,
+                                                     @RequestParam(defaultValue = "20") int size,
+                                                     Principal principal) {
+        User currentUser = userService.getCurrentUser(principal);
+        List<Post> posts = postService.getTrendingPosts(Math.max(page, 0), PageCursor.pageSize(size));
+        return new ResponseEntity<>(postFacade.postsToPostJson(posts, currentUser), HttpStatus.OK);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<CursorPageResponse<PostJson>> searchPosts(@RequestParam("q") String query,
+                                                                    @RequestParam(required = false) String cursor,
+                                                                    @RequestParam(defaultValue = "20") int size,
+                                                                    Principal principal) {
+        User currentUser = userService.getCurrentUser(principal);
+        PostSearchIndex.SearchPage page = postService.searchPosts(query, SearchCursor.decode(cursor), PageCursor.pageSize(size));
+        List<PostJson> posts = postFacade.postsToPostJson(postService.findAllByIdsOrdered(page.postIds()), currentUser);
+        String nextCursor = page.nextCursor() == null ? null : page.nextCursor().encode();
+        return new ResponseEntity<>(new CursorPageResponse<>(posts, nextCursor, nextCursor != null), HttpStatus.OK);
+    }
+
     @GetMapping("/user/posts")
-    public ResponseEntity<List<PostDTO>> getAllPostsForCurrentUser(Principal principal) {
+    public ResponseEntity<List<PostJson>> getAllPostsForCurrentUser(Principal principal) {
         User currentUser = userService.getCurrentUser(principal);
-        List<PostDTO> postsDTO = postService.getAllPostsForCurrentUser(principal)
-                .stream()
-                .map(post->postFacade.postToPostDTO(post,currentUser))
-                .collect(Collectors.toList());
+        List<PostJson> postsDTO = postFacade.postsToPostJson(postService.getAllPostsForCurrentUser(principal), currentUser);
         return new ResponseEntity<>(postsDTO, HttpStatus.OK);
     }
 
     @GetMapping("/user/{username}")
-    public ResponseEntity<List<PostDTO>> getAllPostsForUser(@PathVariable("username") String username,
-                                                            Principal principal) {
+    public ResponseEntity<List<PostJson>> getAllPostsForUser(@PathVariable("username") String username,
+                                                             Principal principal) {
         User currentUser = userService.getCurrentUser(principal);
 
-        List<PostDTO> postsDTO = postService.getAllPostsForUser(username)
-                .stream()
-                .map(post -> postFacade.postToPostDTO(post, currentUser))
-                .collect(Collectors.toList());
+        List<PostJson> postsDTO = postFacade.postsToPostJson(postService.getAllPostsForUser(username), currentUser);
         return new ResponseEntity<>(postsDTO, HttpStatus.OK);
     }
 
 
+    @GetMapping(value = "/user/{username}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamPostsForUser(@PathVariable("username") String username,
+                                                                    Principal principal) {
+        User currentUser = userService.getCurrentUser(principal);
+        User author = userService.getUserByUsername(username);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(streamPosts(author.getId(), currentUser));
+    }
+
+    // NDJSON: один пост на строку, без сборки всего списка в памяти
+    private StreamingResponseBody streamPosts(Long userId, User currentUser) {
+        return out -> postService.streamPosts(userId, STREAM_CHUNK_SIZE, chunk -> {
+            try {
+                for (PostJson post : postFacade.postsToPostJsonForExport(chunk, currentUser)) {
+                    out.write(objectMapper.writeValueAsBytes(post));
+                    out.write('\n');
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @GetMapping("/{postId}/likers")
+    public ResponseEntity<CursorPageResponse<LikedUserDTO>> getLikers(@PathVariable("postId") String postId,
+                                                                      @RequestParam(required = false) String cursor,
+                                                                      @RequestParam(defaultValue = "20") int size) {
+        int pageSize = PageCursor.pageSize(size);
+        List<PostLike> likes = postService.getLikersBefore(Long.parseLong(postId), PageCursor.decode(cursor), pageSize);
+        CursorPageResponse<LikedUserDTO> response = CursorPageResponse.of(
+                likes,
+                pageSize,
+                page -> page.stream().map(postFacade::likeToLikedUserDTO).toList(),
+                l -> new PageCursor(l.getCreatedAt(), l.getId())
+        );
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
     @PostMapping("/{postId}/{username}/like")
     public ResponseEntity<PostDTO> likePost(@PathVariable("postId") String postId,
                                             @PathVariable("username") String username, Principal principal) {
@@ -1,11 +1,13 @@
 package com.example.instaKing.controllers;
 
 import com.example.instaKing.dto.StoryDTO;
+import com.example.instaKing.dto.StoryTrayDTO;
 import com.example.instaKing.dto.StoryViewDTO;
 import com.example.instaKing.facade.Facade;
 import com.example.instaKing.models.Story;
 import com.example.instaKing.models.User;
 import com.example.instaKing.payload.response.MessageResponse;
+import com.example.instaKing.security.CurrentUser;
 import com.example.instaKing.services.StoryService;
 import com.example.instaKing.services.UserService;
 import jakarta.validation.Valid;
@@ -64,9 +66,14 @@ public class StoryController {
     public ResponseEntity<Boolean> hasActiveStoriesForUser(@PathVariable String username) {
         return new ResponseEntity<>(storyService.hasActiveStory(username), HttpStatus.OK);
     }
+    @PostMapping("/hasActiveStories")
+    public Map<String, Boolean> hasActiveStories(@RequestBody List<String> usernames) {
+        return storyService.hasActiveStories(usernames);
+    }
+
     @GetMapping("/getUsernameActiveStoriesForMe")
-    public ResponseEntity<Map<String,Boolean>> getActiveUsernameStoriesForMe(Principal principal) {
-        return new ResponseEntity<>(storyService.getUsersStories(principal), HttpStatus.OK);
+    public ResponseEntity<List<StoryTrayDTO>> getActiveUsernameStoriesForMe(CurrentUser currentUser) {
+        return new ResponseEntity<>(storyService.getStoryTray(currentUser.id()), HttpStatus.OK);
     }
 
 
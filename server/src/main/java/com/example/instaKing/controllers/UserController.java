@@ -1,9 +1,17 @@
 package com.example.instaKing.controllers;
 
+import com.example.instaKing.dto.FollowUserDTO;
 import com.example.instaKing.dto.PostDTO;
+import com.example.instaKing.dto.RelationshipDTO;
+import com.example.instaKing.dto.SuggestionDTO;
 import com.example.instaKing.dto.UserDTO;
 import com.example.instaKing.facade.UserFacade;
 import com.example.instaKing.models.User;
+import com.example.instaKing.payload.request.PageCursor;
+import com.example.instaKing.payload.request.RelationshipsRequest;
+import com.example.instaKing.payload.response.CursorPageResponse;
+import com.example.instaKing.repositories.projections.FollowView;
+import com.example.instaKing.security.CurrentUser;
 import com.example.instaKing.services.UserService;
 import com.example.instaKing.validators.ResponseErrorValidator;
 import jakarta.validation.Valid;
@@ -37,16 +45,13 @@ public class UserController {
 
     @GetMapping("/")
     public ResponseEntity<UserDTO> getCurrentUser(Principal principal) {
-        User user = userService.getCurrentUser(principal);
-
-        UserDTO userDTO = userFacade.userToUserDTO(user);
+        UserDTO userDTO = userFacade.userToProfileDTO(userService.getSummary(principal.getName()));
         return new ResponseEntity<>(userDTO, HttpStatus.OK);
     }
 
     @GetMapping("/{userId}")
     public ResponseEntity<UserDTO> getUserProfile(@PathVariable("userId") String userId) {
-        User user = userService.getUserById(Long.parseLong(userId));
-        UserDTO userDTO = userFacade.userToUserDTO(user);
+        UserDTO userDTO = userFacade.userToProfileDTO(userService.getSummaryById(Long.parseLong(userId)));
         return new ResponseEntity<>(userDTO, HttpStatus.OK);
     }
 
@@ -63,8 +68,7 @@ public class UserController {
 
     @GetMapping("/getUser/{username}")
     public ResponseEntity<UserDTO> getUserProfileByUsername(@PathVariable("username") String username) {
-        User user = userService.getUserByUsername(username);
-        UserDTO userDTO = userFacade.userToUserDTO(user);
+        UserDTO userDTO = userFacade.userToProfileDTO(userService.getSummary(username));
         return new ResponseEntity<>(userDTO, HttpStatus.OK);
     }
 
@@ -89,6 +93,33 @@ public class UserController {
     public ResponseEntity<Object> followingUser(@PathVariable("username") String username) {
         return new ResponseEntity<>(userService.getFollowingUsers(username), HttpStatus.OK);
     }
+    @GetMapping("{username}/followers/page")
+    public ResponseEntity<CursorPageResponse<FollowUserDTO>> followersPage(@PathVariable("username") String username,
+                                                                           @RequestParam(required = false) String cursor,
+                                                                           @RequestParam(defaultValue = "20") int size) {
+        int pageSize = PageCursor.pageSize(size);
+        List<FollowView> follows = userService.getSubscribersBefore(username, PageCursor.decode(cursor), pageSize);
+        return new ResponseEntity<>(toFollowPage(follows, pageSize), HttpStatus.OK);
+    }
+
+    @GetMapping("{username}/following/page")
+    public ResponseEntity<CursorPageResponse<FollowUserDTO>> followingPage(@PathVariable("username") String username,
+                                                                           @RequestParam(required = false) String cursor,
+                                                                           @RequestParam(defaultValue = "20") int size) {
+        int pageSize = PageCursor.pageSize(size);
+        List<FollowView> follows = userService.getSubscriptionsBefore(username, PageCursor.decode(cursor), pageSize);
+        return new ResponseEntity<>(toFollowPage(follows, pageSize), HttpStatus.OK);
+    }
+
+    private CursorPageResponse<FollowUserDTO> toFollowPage(List<FollowView> follows, int pageSize) {
+        return CursorPageResponse.of(
+                follows,
+                pageSize,
+                page -> page.stream().map(userFacade::followToFollowUserDTO).toList(),
+                f -> new PageCursor(f.getFollowedAt(), f.getId())
+        );
+    }
+
     @GetMapping("{username}/isFollow")
     public ResponseEntity<Boolean> foll(Principal principal, @PathVariable String username) {
         if(Objects.equals(principal.getName(), username)) return ResponseEntity.ok(false);
@@ -96,11 +127,20 @@ public class UserController {
         return ResponseEntity.ok(following);
     }
 
+    @GetMapping("/suggestions")
+    public ResponseEntity<List<SuggestionDTO>> suggestions(CurrentUser currentUser,
+                                                           @RequestParam(defaultValue = "20") int limit) {
+        return new ResponseEntity<>(userService.getSuggestions(currentUser.id(), PageCursor.pageSize(limit)), HttpStatus.OK);
+    }
+
     @GetMapping("/search/{username}")
-    public ResponseEntity<?> search(@PathVariable("username") String username) {
-        List<UserDTO> followingsDTO = userService.search(username)
+    public ResponseEntity<?> search(@PathVariable("username") String username,
+                                    @RequestParam(defaultValue = "20") int limit,
+                                    CurrentUser currentUser) {
+        Long searcherId = currentUser == null ? null : currentUser.id();
+        List<UserDTO> followingsDTO = userService.search(username, searcherId, PageCursor.pageSize(limit))
                 .stream()
-                .map(userFacade::userToUserDTO).collect(Collectors.toList());
+                .map(userFacade::profileToUserDTO).collect(Collectors.toList());
         return new ResponseEntity<>(followingsDTO, HttpStatus.OK);
     }
 
@@ -111,4 +151,17 @@ public class UserController {
         return userService.isFollowingBatch(principal.getName(), usernames);
     }
 
+    @PostMapping("/relationships")
+    public ResponseEntity<Object> getRelationships(@Valid @RequestBody RelationshipsRequest request,
+                                                   BindingResult bindingResult,
+                                                   CurrentUser currentUser) {
+        ResponseEntity<Object> errorResponse = responseErrorValidator.mapValidationService(bindingResult);
+        if (!ObjectUtils.isEmpty(errorResponse)) return errorResponse;
+
+        List<RelationshipDTO> relationships = userService.getRelationships(currentUser.id(),
+                Objects.requireNonNullElse(request.getUsernames(), List.of()),
+                Objects.requireNonNullElse(request.getIds(), List.of()));
+        return new ResponseEntity<>(relationships, HttpStatus.OK);
+    }
+
 }
@@ -0,0 +1,20 @@
+package com.example.instaKing.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class FollowUserDTO {
+    private Long id;
+    private String username;
+    private String avatarUrl;
+    private LocalDateTime followedAt;
+
+    public FollowUserDTO(Long id, String username, String avatarUrl, LocalDateTime followedAt) {
+        this.id = id;
+        this.username = username;
+        this.avatarUrl = avatarUrl;
+        this.followedAt = followedAt;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.instaKing.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class LikedUserDTO {
+    private String username;
+    private String avatarUrl;
+    private LocalDateTime likedAt;
+
+
+    public LikedUserDTO(String username, String avatarUrl, LocalDateTime likedAt) {
+        this.username = username;
+        this.avatarUrl = avatarUrl;
+        this.likedAt = likedAt;
+    }
+}
@@ -5,6 +5,7 @@ import lombok.Data;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
 
 @Data
@@ -19,8 +20,13 @@ public class PostDTO {
     private String username;
 
     private Integer likes;
+    private Integer favorites;
+    private Integer commentCount;
+    private List<CommentDTO> latestComments;
 
+    // несколько последних лайкнувших (username -> avatar), полный список - /api/post/{postId}/likers
     private HashMap<String,String> usersLiked;
+    private boolean likedByMe;
     private boolean favorited;
     private LocalDateTime addedAt;
     private String avatarUrl;
@@ -0,0 +1,47 @@
+package com.example.instaKing.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Пост в ответе: готовый JSON общей для всех части (без закрывающей скобки)
+ * и поля текущего пользователя likedByMe/favorited/addedAt, дописываемые при сериализации.
+ * По составу полей совпадает с PostDTO.
+ */
+public class PostJson implements JsonSerializable {
+
+    private final SerializableString fragment;
+    private final boolean likedByMe;
+    private final LocalDateTime addedAt;
+
+    public PostJson(SerializableString fragment, boolean likedByMe, LocalDateTime addedAt) {
+        this.fragment = fragment;
+        this.likedByMe = likedByMe;
+        this.addedAt = addedAt;
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        gen.writeRawValue(fragment);
+        gen.writeRaw(likedByMe ? ",\"likedByMe\":true" : ",\"likedByMe\":false");
+        if (addedAt == null) {
+            gen.writeRaw(",\"favorited\":false,\"addedAt\":null}");
+        } else {
+            gen.writeRaw(",\"favorited\":true,\"addedAt\":\"");
+            gen.writeRaw(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(addedAt));
+            gen.writeRaw("\"}");
+        }
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+        serialize(gen, serializers);
+    }
+}
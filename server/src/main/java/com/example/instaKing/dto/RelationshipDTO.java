@@ -0,0 +1,23 @@
+package com.example.instaKing.dto;
+
+import lombok.Data;
+
+@Data
+public class RelationshipDTO {
+    private Long id;
+    private String username;
+    // текущий пользователь подписан на него
+    private boolean following;
+    // он подписан на текущего пользователя
+    private boolean followedBy;
+    // он в списке близких друзей текущего пользователя
+    private boolean closeFriend;
+
+    public RelationshipDTO(Long id, String username, boolean following, boolean followedBy, boolean closeFriend) {
+        this.id = id;
+        this.username = username;
+        this.following = following;
+        this.followedBy = followedBy;
+        this.closeFriend = closeFriend;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.instaKing.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class StoryTrayDTO {
+    private Long userId;
+    private String username;
+    private String avatarUrl;
+    // кольцо в ленте историй: есть непросмотренные истории
+    private boolean hasUnseen;
+    private LocalDateTime latestStoryAt;
+
+    public StoryTrayDTO(Long userId, String username, String avatarUrl, boolean hasUnseen, LocalDateTime latestStoryAt) {
+        this.userId = userId;
+        this.username = username;
+        this.avatarUrl = avatarUrl;
+        this.hasUnseen = hasUnseen;
+        this.latestStoryAt = latestStoryAt;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.instaKing.dto;
+
+import lombok.Data;
+
+@Data
+public class SuggestionDTO {
+    private Long id;
+    private String username;
+    private String avatarUrl;
+    // сколько из подписок текущего пользователя подписаны на него
+    private int mutualCount;
+
+    public SuggestionDTO(Long id, String username, String avatarUrl, int mutualCount) {
+        this.id = id;
+        this.username = username;
+        this.avatarUrl = avatarUrl;
+        this.mutualCount = mutualCount;
+    }
+}
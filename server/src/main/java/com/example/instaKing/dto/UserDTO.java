@@ -14,4 +14,9 @@ public class UserDTO {
     private String avatarUrl;
     @NotEmpty
     private String bio;
+    // счетчики заполняются только для профиля
+    private Integer followersCount;
+    private Integer followingCount;
+    private Integer postsCount;
+    private Integer storiesCount;
 }
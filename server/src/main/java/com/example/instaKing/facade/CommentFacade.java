@@ -2,37 +2,61 @@ package com.example.instaKing.facade;
 
 import com.example.instaKing.dto.CommentDTO;
 import com.example.instaKing.models.Comment;
-import com.example.instaKing.models.User;
-import com.example.instaKing.services.UserService;
+import com.example.instaKing.repositories.UserRepository;
+import com.example.instaKing.repositories.projections.UserAvatarView;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 @Component
 public class CommentFacade {
     @Value("${app.base-url}")
     private String baseUrl;
 
-    private UserService userService;
+    private UserRepository userRepository;
 
     @Autowired
-    public CommentFacade(UserService userService) {
-        this.userService = userService;
+    public CommentFacade(UserRepository userRepository) {
+        this.userRepository = userRepository;
     }
 
 
     public  CommentDTO CommentToCommentDTO(Comment comment) {
-        CommentDTO commentDTO = new CommentDTO();
-        User user = userService.getUserById(comment.getUserId());
-        commentDTO.setId(comment.getId());
-        commentDTO.setUsername(comment.getUsername());
-        commentDTO.setMessage(comment.getMessage());
-        commentDTO.setCreatedDate(comment.getCreatedDate());
-        if (user.getAvatarUrl() != null && !user.getAvatarUrl().startsWith("http")) {
-            commentDTO.setAvatarUrl(baseUrl + "/images/" + user.getAvatarUrl());
-        } else {
-            commentDTO.setAvatarUrl(user.getAvatarUrl());
+        return commentsToCommentDTOs(List.of(comment)).get(0);
+    }
+
+    // аватары авторов грузятся одним запросом на весь список
+    public List<CommentDTO> commentsToCommentDTOs(List<Comment> comments) {
+        if (comments.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<Long> userIds = comments.stream().map(Comment::getUserId).collect(Collectors.toSet());
+        Map<Long, UserAvatarView> users = userRepository.findAvatarsByIds(userIds).stream()
+                .collect(Collectors.toMap(UserAvatarView::getId, Function.identity()));
+
+        List<CommentDTO> result = new ArrayList<>(comments.size());
+        for (Comment comment : comments) {
+            CommentDTO commentDTO = new CommentDTO();
+            commentDTO.setId(comment.getId());
+            commentDTO.setUsername(comment.getUsername());
+            commentDTO.setMessage(comment.getMessage());
+            commentDTO.setCreatedDate(comment.getCreatedDate());
+            UserAvatarView user = users.get(comment.getUserId());
+            String avatarUrl = user != null ? user.getAvatarUrl() : null;
+            if (avatarUrl != null && !avatarUrl.startsWith("http")) {
+                commentDTO.setAvatarUrl(baseUrl + "/images/" + avatarUrl);
+            } else {
+                commentDTO.setAvatarUrl(avatarUrl);
+            }
+            result.add(commentDTO);
         }
-        return commentDTO;
+        return result;
     }
 }
@@ -3,14 +3,14 @@ package com.example.instaKing.facade;
 import com.example.instaKing.dto.*;
 import com.example.instaKing.payload.response.ResponseForStoryMain;
 import com.example.instaKing.models.*;
-import com.example.instaKing.repositories.FavoriteRepository;
-import com.example.instaKing.services.UserService;
+import com.example.instaKing.services.ActiveStoryIndex;
+import com.example.instaKing.services.StoryViewRecorder;
+import com.example.instaKing.services.UserCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -19,29 +19,18 @@ public class Facade {
     @Value("${app.base-url}")
     private String baseUrl;
 
-    private final FavoriteRepository favoriteRepository;
-    private final UserService userService;
+    private final PostFacade postFacade;
+    private final StoryViewRecorder storyViewRecorder;
+    private final UserCache userCache;
     @Autowired
-    public Facade(FavoriteRepository favoriteRepository, UserService userService) {
-        this.favoriteRepository = favoriteRepository;
-        this.userService = userService;
+    public Facade(PostFacade postFacade, StoryViewRecorder storyViewRecorder, UserCache userCache) {
+        this.postFacade = postFacade;
+        this.storyViewRecorder = storyViewRecorder;
+        this.userCache = userCache;
     }
 
     public FavoriteDTO postToFavoriteDTO(Favorite favorite, User currentUser) {
-        PostDTO postDTO = new PostDTO();
-        postDTO.setId(favorite.getPost().getId());
-        postDTO.setTitle(favorite.getPost().getTitle());
-        postDTO.setLikes(favorite.getPost().getLikes());
-        postDTO.setCaption(favorite.getPost().getCaption());
-        postDTO.setUsername(favorite.getPost().getUser().getUsername());
-        HashMap<String,String> usersLiked = new HashMap<>();
-        for (String s:favorite.getPost().getLikedUser()){
-            usersLiked.put(s,userService.getAvatarUrl(s));
-        }
-        postDTO.setUsersLiked(usersLiked);
-        postDTO.setLocation(favorite.getPost().getLocation());
-        boolean isFavorited = favoriteRepository.existsByUserAndPost(currentUser, favorite.getPost());
-        postDTO.setFavorited(isFavorited);
+        PostDTO postDTO = postFacade.postToPostDTO(favorite.getPost(), currentUser);
         FavoriteDTO favoriteDTO = new FavoriteDTO();
         favoriteDTO.setPost(postDTO);
         favoriteDTO.setAddedAt(favorite.getAddedAt());
@@ -56,7 +45,10 @@ public class Facade {
         storyDTO.setMediaUrl(story.getMediaUrl());
         storyDTO.setCreatedAt(story.getCreatedAt());
         storyDTO.setExpiresAt(story.getExpiresAt());
-        storyDTO.setUsername(story.getUser().getUsername());
+        // автор из UserCache: story.getUser() обычно lazy-прокси, чтение его полей - запрос к users
+        UserCache.UserSummary owner = userCache.findById(story.getUser().getId())
+                .orElseThrow(() -> new IllegalStateException("Story owner not found: " + story.getId()));
+        storyDTO.setUsername(owner.username());
         storyDTO.setVisibility(story.getVisibility());
         storyDTO.setDescription(story.getDescription());
         Map<String, LocalDateTime> viewedMap = story.getViewsDetails()
@@ -67,17 +59,42 @@ public class Facade {
                 ));
         storyDTO.setUsersViewed(viewedMap);
 
-        boolean viewed = story.getViewsDetails().stream()
-                .anyMatch(v -> v.getUser().getUsername().equals(currentUser.getUsername()));
-        storyDTO.setViewed(viewed);
+        // учитывает и просмотры, еще не записанные в story_view
+        storyDTO.setViewed(storyViewRecorder.hasViewed(story.getId(), currentUser.getId()));
 
-        if (story.getUser().getAvatarUrl() != null && !story.getUser().getAvatarUrl().startsWith("http")) {
-            storyDTO.setUserAvatarUrl(baseUrl + "/images/" + story.getUser().getAvatarUrl());
-        } else {
-            storyDTO.setUserAvatarUrl(story.getUser().getAvatarUrl());
-        }
+        storyDTO.setUserAvatarUrl(avatarUrl(owner.avatarUrl()));
+        return storyDTO;
+    }
+
+    /**
+     * Активная история из ActiveStoryIndex. Список зрителей заполняется только для владельца.
+     */
+    public StoryDTO activeStoryToDTO(ActiveStoryIndex.ActiveStory story, UserCache.UserSummary owner, Long viewerId,
+                                     Map<String, LocalDateTime> usersViewed) {
+        StoryDTO storyDTO = new StoryDTO();
+        storyDTO.setId(story.id());
+        storyDTO.setViews(storyViewRecorder.countViewers(story.id()));
+        storyDTO.setMediaUrl(story.mediaUrl());
+        storyDTO.setCreatedAt(story.createdAt());
+        storyDTO.setExpiresAt(story.expiresAt());
+        storyDTO.setUsername(owner.username());
+        storyDTO.setVisibility(story.visibility());
+        storyDTO.setDescription(story.description());
+        storyDTO.setUsersViewed(usersViewed);
+        storyDTO.setViewed(storyViewRecorder.hasViewed(story.id(), viewerId));
+        storyDTO.setUserAvatarUrl(avatarUrl(owner.avatarUrl()));
         return storyDTO;
     }
 
+    public StoryTrayDTO storyTrayToDTO(UserCache.UserSummary owner, boolean hasUnseen, LocalDateTime latestStoryAt) {
+        return new StoryTrayDTO(owner.id(), owner.username(), avatarUrl(owner.avatarUrl()), hasUnseen, latestStoryAt);
+    }
+
+    private String avatarUrl(String avatarUrl) {
+        if (avatarUrl != null && !avatarUrl.startsWith("http")) {
+            return baseUrl + "/images/" + avatarUrl;
+        }
+        return avatarUrl;
+    }
 
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import com.example.instaKing.dto.MessageDTO;
 import com.example.instaKing.dto.NotificationDTO;
 import com.example.instaKing.models.Message;
 import com.example.instaKing.models.Notification;
+import com.example.instaKing.services.UserCache;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -13,6 +14,12 @@ public class NotificationFacade {
     @Value("${app.base-url}")
     private String baseUrl;
 
+    private final UserCache userCache;
+
+    public NotificationFacade(UserCache userCache) {
+        this.userCache = userCache;
+    }
+
     public NotificationDTO toDTO(Notification notification) {
         NotificationDTO notificationDTO = new NotificationDTO();
         notificationDTO.setId(notification.getId());
@@ -21,11 +28,14 @@ public class NotificationFacade {
         notificationDTO.setRead(notification.isRead());
         notificationDTO.setCreatedAt(notification.getCreatedAt());
         notificationDTO.setType(notification.getType());
-        notificationDTO.setSenderUsername(notification.getSender().getUsername());
-        if (notification.getSender().getAvatarUrl() != null && !notification.getSender().getAvatarUrl().startsWith("http")) {
-            notificationDTO.setSenderAvatarUrl(baseUrl + "/images/" + notification.getSender().getAvatarUrl());
+        // отправитель - прокси по id, имя и аватар берутся из UserCache
+        UserCache.UserSummary sender = userCache.findById(notification.getSender().getId())
+                .orElseThrow(() -> new IllegalStateException("Sender not found: " + notification.getSender().getId()));
+        notificationDTO.setSenderUsername(sender.username());
+        if (sender.avatarUrl() != null && !sender.avatarUrl().startsWith("http")) {
+            notificationDTO.setSenderAvatarUrl(baseUrl + "/images/" + sender.avatarUrl());
         } else {
-            notificationDTO.setSenderAvatarUrl(notification.getSender().getAvatarUrl());
+            notificationDTO.setSenderAvatarUrl(sender.avatarUrl());
         }
         return notificationDTO;
     }
@@ -1,58 +1,223 @@
 package com.example.instaKing.facade;
 
+import com.example.instaKing.dto.CommentDTO;
+import com.example.instaKing.dto.LikedUserDTO;
 import com.example.instaKing.dto.PostDTO;
-import com.example.instaKing.models.Favorite;
+import com.example.instaKing.dto.PostJson;
+import com.example.instaKing.models.Comment;
 import com.example.instaKing.models.Post;
+import com.example.instaKing.models.PostLike;
 import com.example.instaKing.models.User;
+import com.example.instaKing.repositories.CommentRepository;
 import com.example.instaKing.repositories.FavoriteRepository;
-import com.example.instaKing.services.UserService;
+import com.example.instaKing.repositories.PostLikeRepository;
+import com.example.instaKing.repositories.PostRepository;
+import com.example.instaKing.repositories.UserRepository;
+import com.example.instaKing.repositories.projections.UserAvatarView;
+import com.example.instaKing.services.PostCounterAggregator;
+import com.fasterxml.jackson.core.SerializableString;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Component
 public class PostFacade {
 
+    private static final String PLACEHOLDER_AVATAR = "assets/placeholder.jpg";
+
     @Value("${app.base-url}")
     private String baseUrl;
 
     private final FavoriteRepository favoriteRepository;
-    private final UserService userService;
-    public PostFacade(FavoriteRepository favoriteRepository, UserService userService, UserService userService1) {
+    private final PostLikeRepository postLikeRepository;
+    private final UserRepository userRepository;
+    private final PostCounterAggregator postCounterAggregator;
+    private final CommentRepository commentRepository;
+    private final CommentFacade commentFacade;
+    private final int commentPreview;
+    private final int likerPreview;
+    private final PostRepository postRepository;
+    private final PostFragmentCache postFragmentCache;
+
+    public PostFacade(FavoriteRepository favoriteRepository,
+                      PostLikeRepository postLikeRepository,
+                      UserRepository userRepository,
+                      PostCounterAggregator postCounterAggregator,
+                      CommentRepository commentRepository,
+                      CommentFacade commentFacade,
+                      @Value("${app.feed.comment-preview:3}") int commentPreview,
+                      @Value("${app.feed.liker-preview:3}") int likerPreview,
+                      PostRepository postRepository,
+                      PostFragmentCache postFragmentCache) {
         this.favoriteRepository = favoriteRepository;
-        this.userService = userService1;
+        this.postLikeRepository = postLikeRepository;
+        this.userRepository = userRepository;
+        this.postCounterAggregator = postCounterAggregator;
+        this.commentRepository = commentRepository;
+        this.commentFacade = commentFacade;
+        this.commentPreview = commentPreview;
+        this.likerPreview = likerPreview;
+        this.postRepository = postRepository;
+        this.postFragmentCache = postFragmentCache;
     }
 
     public PostDTO postToPostDTO(Post post, User currentUser) {
-        PostDTO postDTO = new PostDTO();
-        postDTO.setId(post.getId());
-        postDTO.setTitle(post.getTitle());
-        postDTO.setLikes(post.getLikes());
-        postDTO.setCaption(post.getCaption());
-        postDTO.setUsername(post.getUser().getUsername());
-        HashMap<String,String> usersLiked = new HashMap<>();
-        for (String s:post.getLikedUser()){
-            usersLiked.put(s,userService.getAvatarUrl(s));
+        return postsToPostDTOs(List.of(post), currentUser).get(0);
+    }
+
+    /**
+     * Собирает DTO для страницы постов фиксированным числом запросов:
+     * авторы, лайкнувшие вместе с аватарами, избранное текущего пользователя
+     * и последние комментарии грузятся IN-списками.
+     */
+    public List<PostDTO> postsToPostDTOs(List<Post> posts, User currentUser) {
+        if (posts.isEmpty()) {
+            return new ArrayList<>();
         }
-        postDTO.setUsersLiked(usersLiked);
-        postDTO.setLocation(post.getLocation());
+        List<Long> postIds = posts.stream().map(Post::getId).toList();
+        Map<Long, PostCounters> counters = posts.stream()
+                .collect(Collectors.toMap(Post::getId, p -> new PostCounters(p.getLikes(), p.getFavorites(), p.getCommentCount())));
+        List<PostDTO> result = buildDTOs(posts, counters, loadFavorites(currentUser, postIds));
+        Set<Long> liked = loadLiked(currentUser, postIds);
+        result.forEach(postDTO -> postDTO.setLikedByMe(liked.contains(postDTO.getId())));
+        return result;
+    }
 
-        Optional<Favorite> favoriteOpt = favoriteRepository.findByUserAndPost(currentUser, post);
-        postDTO.setFavorited(favoriteOpt.isPresent());
-        favoriteOpt.ifPresent(fav -> postDTO.setAddedAt(fav.getAddedAt()));
+    /**
+     * То же, что postsToPostDTOs, но общая часть поста берется готовым JSON из PostFragmentCache,
+     * а DTO собираются только для постов, которых в кэше нет.
+     */
+    public List<PostJson> postsToPostJson(List<Post> posts, User currentUser) {
+        return postsToPostJson(posts, currentUser, true);
+    }
+
+    /**
+     * Для выгрузки всех постов: готовые фрагменты берутся из кэша, новые в него не кладутся,
+     * чтобы экспорт не вытеснял посты горячей ленты.
+     */
+    public List<PostJson> postsToPostJsonForExport(List<Post> posts, User currentUser) {
+        return postsToPostJson(posts, currentUser, false);
+    }
 
-        boolean isFavorited = favoriteRepository.existsByUserAndPost(currentUser, post);
-        postDTO.setFavorited(isFavorited);
-        if (post.getUser().getAvatarUrl() != null && !post.getUser().getAvatarUrl().startsWith("http")) {
-            postDTO.setAvatarUrl(baseUrl + "/images/" + post.getUser().getAvatarUrl());
-        } else {
-            postDTO.setAvatarUrl(post.getUser().getAvatarUrl());
+    private List<PostJson> postsToPostJson(List<Post> posts, User currentUser, boolean cache) {
+        if (posts.isEmpty()) {
+            return new ArrayList<>();
         }
-        return postDTO;
+        List<Long> postIds = posts.stream().map(Post::getId).toList();
+        Map<Long, LocalDateTime> favorites = loadFavorites(currentUser, postIds);
+        Set<Long> liked = loadLiked(currentUser, postIds);
+        Map<Long, SerializableString> fragments = new HashMap<>(cache
+                ? postFragmentCache.getAll(postIds)
+                : postFragmentCache.peekAll(postIds));
+
+        List<Post> missing = posts.stream().filter(p -> !fragments.containsKey(p.getId())).toList();
+        if (!missing.isEmpty()) {
+            // версию берем до чтения счетчиков: посты могли быть загружены до последней инвалидации
+            long version = postFragmentCache.version();
+            Map<Long, PostCounters> counters = new HashMap<>();
+            for (Object[] row : postRepository.findCounters(missing.stream().map(Post::getId).toList())) {
+                counters.put((Long) row[0], new PostCounters((Integer) row[1], (Integer) row[2], (Integer) row[3]));
+            }
+            for (PostDTO postDTO : buildDTOs(missing, counters, Map.of())) {
+                fragments.put(postDTO.getId(), cache
+                        ? postFragmentCache.put(postDTO, version)
+                        : postFragmentCache.serialize(postDTO));
+            }
+        }
+
+        List<PostJson> result = new ArrayList<>(posts.size());
+        for (Post post : posts) {
+            SerializableString fragment = fragments.get(post.getId());
+            if (fragment != null) {
+                result.add(new PostJson(fragment, liked.contains(post.getId()), favorites.get(post.getId())));
+            }
+        }
+        return result;
+    }
+
+    private Map<Long, LocalDateTime> loadFavorites(User currentUser, List<Long> postIds) {
+        Map<Long, LocalDateTime> favorites = new HashMap<>();
+        for (Object[] row : favoriteRepository.findAddedAtByUserAndPostIds(currentUser.getId(), postIds)) {
+            favorites.put((Long) row[0], (LocalDateTime) row[1]);
+        }
+        return favorites;
+    }
+
+    private Set<Long> loadLiked(User currentUser, List<Long> postIds) {
+        return new HashSet<>(postLikeRepository.findLikedPostIds(currentUser.getId(), postIds));
     }
 
+    private List<PostDTO> buildDTOs(List<Post> posts, Map<Long, PostCounters> counters, Map<Long, LocalDateTime> favorites) {
+        List<Long> postIds = posts.stream().map(Post::getId).toList();
+        Set<Long> authorIds = posts.stream().map(p -> p.getUser().getId()).collect(Collectors.toSet());
 
+        Map<Long, UserAvatarView> authors = userRepository.findAvatarsByIds(authorIds).stream()
+                .collect(Collectors.toMap(UserAvatarView::getId, Function.identity()));
+
+        Map<Long, HashMap<String, String>> likersByPost = new HashMap<>();
+        if (likerPreview > 0) {
+            for (Object[] row : postLikeRepository.findLikerPreview(postIds, likerPreview)) {
+                likersByPost.computeIfAbsent(((Number) row[0]).longValue(), id -> new LinkedHashMap<>())
+                        .put((String) row[1], likerAvatar((String) row[2]));
+            }
+        }
+
+        Map<Long, List<CommentDTO>> commentsByPost = new HashMap<>();
+        if (commentPreview > 0) {
+            List<Comment> latest = commentRepository.findLatestForPosts(postIds, commentPreview);
+            List<CommentDTO> latestDTOs = commentFacade.commentsToCommentDTOs(latest);
+            for (int i = 0; i < latest.size(); i++) {
+                commentsByPost.computeIfAbsent(latest.get(i).getPost().getId(), id -> new ArrayList<>()).add(latestDTOs.get(i));
+            }
+        }
+
+        List<PostDTO> result = new ArrayList<>(posts.size());
+        for (Post post : posts) {
+            PostCounters postCounters = counters.get(post.getId());
+            if (postCounters == null) {
+                // пост удален между запросами
+                continue;
+            }
+            PostDTO postDTO = new PostDTO();
+            postDTO.setId(post.getId());
+            postDTO.setTitle(post.getTitle());
+            postDTO.setLikes((int) (postCounters.likes() + postCounterAggregator.pending(PostCounterAggregator.Counter.LIKES, post.getId())));
+            postDTO.setFavorites((int) (postCounters.favorites() + postCounterAggregator.pending(PostCounterAggregator.Counter.FAVORITES, post.getId())));
+            postDTO.setCommentCount(postCounters.commentCount());
+            postDTO.setLatestComments(commentsByPost.getOrDefault(post.getId(), new ArrayList<>()));
+            postDTO.setCaption(post.getCaption());
+            postDTO.setLocation(post.getLocation());
+
+            postDTO.setUsersLiked(likersByPost.getOrDefault(post.getId(), new HashMap<>()));
+
+            LocalDateTime addedAt = favorites.get(post.getId());
+            postDTO.setFavorited(addedAt != null);
+            postDTO.setAddedAt(addedAt);
+
+            UserAvatarView author = authors.get(post.getUser().getId());
+            postDTO.setUsername(author.getUsername());
+            if (author.getAvatarUrl() != null && !author.getAvatarUrl().startsWith("http")) {
+                postDTO.setAvatarUrl(baseUrl + "/images/" + author.getAvatarUrl());
+            } else {
+                postDTO.setAvatarUrl(author.getAvatarUrl());
+            }
+            result.add(postDTO);
+        }
+        return result;
+    }
+
+    public LikedUserDTO likeToLikedUserDTO(PostLike like) {
+        return new LikedUserDTO(like.getUser().getUsername(), likerAvatar(like.getUser().getAvatarUrl()), like.getCreatedAt());
+    }
+
+    private static String likerAvatar(String avatarUrl) {
+        return avatarUrl != null ? avatarUrl : PLACEHOLDER_AVATAR;
+    }
+
+    private record PostCounters(int likes, int favorites, int commentCount) {
+    }
 }
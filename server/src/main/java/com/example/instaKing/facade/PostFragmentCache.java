@@ -0,0 +1,122 @@
+package com.example.instaKing.facade;
+
+import com.example.instaKing.dto.PostDTO;
+import com.example.instaKing.services.AfterCommit;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Кэш JSON постов без полей текущего пользователя (likedByMe, favorited, addedAt).
+ * Фрагмент хранится уже закодированным: {@link SerializedString} держит UTF-8 байты
+ * и пишется в ответ без повторной сериализации.
+ */
+@Component
+public class PostFragmentCache {
+
+    private static final List<String> VIEWER_FIELDS = List.of("likedByMe", "favorited", "addedAt");
+
+    private final ObjectMapper objectMapper;
+    private final Cache<Long, Fragment> fragments;
+    // версия последней инвалидации поста: фрагмент, собранный раньше нее, не кладется в кэш
+    private final Cache<Long, Long> invalidatedAt;
+    private final AtomicLong version = new AtomicLong();
+
+    public PostFragmentCache(ObjectMapper objectMapper,
+                             @Value("${app.feed.fragment-cache-size:20000}") long maxSize,
+                             @Value("${app.feed.fragment-cache-ttl-seconds:300}") long ttlSeconds) {
+        this.objectMapper = objectMapper;
+        // TTL ограничивает устаревание полей, которые не инвалидируются явно (аватары авторов и лайкнувших)
+        this.fragments = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+        this.invalidatedAt = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(1))
+                .build();
+    }
+
+    public Map<Long, SerializableString> getAll(Collection<Long> postIds) {
+        Map<Long, Fragment> present = fragments.getAllPresent(postIds);
+        return present.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().json()));
+    }
+
+    /**
+     * Как getAll, но без учета обращения в политике вытеснения: для экспорта,
+     * который не должен поднимать свои посты выше ленты.
+     */
+    public Map<Long, SerializableString> peekAll(Collection<Long> postIds) {
+        Map<Long, SerializableString> present = new HashMap<>();
+        for (Long postId : postIds) {
+            Fragment fragment = fragments.policy().getIfPresentQuietly(postId);
+            if (fragment != null) {
+                present.put(postId, fragment.json());
+            }
+        }
+        return present;
+    }
+
+    /**
+     * Текущая версия; берется до загрузки данных поста и передается в {@link #put}.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    public SerializableString put(PostDTO postDTO, long builtAt) {
+        SerializableString fragment = serialize(postDTO);
+        Long postId = postDTO.getId();
+        fragments.put(postId, new Fragment(builtAt, fragment));
+        // инвалидация могла пройти, пока фрагмент собирался
+        Long invalidated = invalidatedAt.getIfPresent(postId);
+        if (invalidated != null && invalidated > builtAt) {
+            fragments.asMap().remove(postId, new Fragment(builtAt, fragment));
+        }
+        return fragment;
+    }
+
+    /**
+     * Фрагмент без записи в кэш.
+     */
+    public SerializableString serialize(PostDTO postDTO) {
+        ObjectNode node = objectMapper.valueToTree(postDTO);
+        node.remove(VIEWER_FIELDS);
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(node);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize post " + postDTO.getId(), e);
+        }
+        return new SerializedString(json.substring(0, json.length() - 1));
+    }
+
+    /**
+     * Сбрасывает фрагмент после коммита текущей транзакции, если она есть.
+     */
+    public void invalidate(Long postId) {
+        AfterCommit.run(() -> evict(postId));
+    }
+
+    private void evict(Long postId) {
+        invalidatedAt.put(postId, version.incrementAndGet());
+        fragments.invalidate(postId);
+    }
+
+    private record Fragment(long version, SerializableString json) {
+    }
+}
@@ -1,7 +1,13 @@
 package com.example.instaKing.facade;
 
+import com.example.instaKing.dto.FollowUserDTO;
 import com.example.instaKing.dto.UserDTO;
 import com.example.instaKing.models.User;
+import com.example.instaKing.models.UserStats;
+import com.example.instaKing.repositories.projections.FollowView;
+import com.example.instaKing.services.UserCache;
+import com.example.instaKing.services.UserSearchIndex;
+import com.example.instaKing.services.UserStatsService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -11,6 +17,11 @@ public class UserFacade {
     @Value("${app.base-url}")
     private String baseUrl;
 
+    private final UserStatsService userStatsService;
+
+    public UserFacade(UserStatsService userStatsService) {
+        this.userStatsService = userStatsService;
+    }
 
     public UserDTO userToUserDTO(User user) {
         UserDTO userDTO = new UserDTO();
@@ -27,4 +38,44 @@ public class UserFacade {
         return userDTO;
     }
 
+    // Результат поиска собирается из индекса без обращения к БД
+    public UserDTO profileToUserDTO(UserSearchIndex.Profile profile) {
+        UserDTO userDTO = new UserDTO();
+        userDTO.setId(profile.id());
+        userDTO.setUsername(profile.username());
+        userDTO.setFirstname(profile.firstname());
+        userDTO.setLastname(profile.lastname());
+        if (profile.avatarUrl() != null && !profile.avatarUrl().startsWith("http")) {
+            userDTO.setAvatarUrl(baseUrl + "/images/" + profile.avatarUrl());
+        } else {
+            userDTO.setAvatarUrl(profile.avatarUrl());
+        }
+        return userDTO;
+    }
+
+    public FollowUserDTO followToFollowUserDTO(FollowView follow) {
+        return new FollowUserDTO(follow.getId(), follow.getUsername(), follow.getAvatarUrl(), follow.getFollowedAt());
+    }
+
+    // Шапка профиля: сводка из UserCache и счетчики из user_stats - один запрос к БД
+    public UserDTO userToProfileDTO(UserCache.UserSummary user) {
+        UserDTO userDTO = new UserDTO();
+        userDTO.setId(user.id());
+        userDTO.setUsername(user.username());
+        userDTO.setFirstname(user.firstname());
+        userDTO.setLastname(user.lastname());
+        userDTO.setBio(user.bio());
+        if (user.avatarUrl() != null && !user.avatarUrl().startsWith("http")) {
+            userDTO.setAvatarUrl(baseUrl + "/images/" + user.avatarUrl());
+        } else {
+            userDTO.setAvatarUrl(user.avatarUrl());
+        }
+        UserStats stats = userStatsService.getStats(user.id());
+        userDTO.setFollowersCount(stats.getFollowers());
+        userDTO.setFollowingCount(stats.getFollowing());
+        userDTO.setPostsCount(stats.getPosts());
+        userDTO.setStoriesCount(stats.getStories());
+        return userDTO;
+    }
+
 }
@@ -7,6 +7,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Data
+@Table(indexes = @Index(name = "ix_comment_post_created_id", columnList = "post_id, created_date DESC, id DESC"))
 public class Comment {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
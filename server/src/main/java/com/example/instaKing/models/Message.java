@@ -10,6 +10,7 @@ import java.time.LocalDateTime;
 
 @Data
 @Entity
+@Table(indexes = @Index(name = "ix_message_conversation_created_id", columnList = "conversation_id, created_at DESC, id DESC"))
 public class Message {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
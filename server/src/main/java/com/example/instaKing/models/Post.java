@@ -2,15 +2,15 @@ package com.example.instaKing.models;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 @Entity
 @Data
+@Table(indexes = @Index(name = "ix_post_created_at_id", columnList = "created_at DESC, id DESC"))
 public class Post {
 
     @Id
@@ -26,14 +26,19 @@ public class Post {
 
     private int likes;
 
-    @Column()
-    @ElementCollection(targetClass = String.class)
-    private Set<String> likedUser= new HashSet<>();
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private int favorites;
 
-    @ManyToOne()
+    @ManyToOne(fetch = FetchType.LAZY)
     private User user;
-    @OneToMany(cascade = CascadeType.REFRESH, fetch = FetchType.EAGER,mappedBy = "post",orphanRemoval = true)
+    @OneToMany(cascade = CascadeType.REFRESH, fetch = FetchType.LAZY,mappedBy = "post",orphanRemoval = true)
     private List<Comment> comments=new ArrayList<>();
+
+    // Денормализованное число комментариев, ведет CommentService
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private int commentCount;
     @Column(updatable = false)
     private LocalDateTime createdAt;
 
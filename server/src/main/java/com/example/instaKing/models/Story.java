@@ -12,6 +12,11 @@ import java.util.Set;
 
 @Data
 @Entity
+@Table(indexes = {
+        @Index(name = "ix_story_user_expires", columnList = "user_id, expires_at"),
+        // очередь StoryExpirySweeper
+        @Index(name = "ix_story_expires", columnList = "expires_at")
+})
 public class Story {
 
     @Id
@@ -0,0 +1,38 @@
+package com.example.instaKing.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Истекшие истории. Строку переносит StoryExpirySweeper, медиафайл и просмотры при этом удаляются,
+ * остаются метаданные и итоговое число просмотров. id совпадает с id исходной истории.
+ */
+@Entity
+@Data
+@Table(name = "story_archive", indexes = @Index(name = "ix_story_archive_user", columnList = "user_id, created_at"))
+public class StoryArchive {
+
+    @Id
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    private String mediaUrl;
+
+    private String description;
+
+    @Column(length = 32)
+    private String visibility;
+
+    private int views;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime expiresAt;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+}
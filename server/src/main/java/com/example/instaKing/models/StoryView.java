@@ -9,6 +9,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Data
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_story_view_story_user", columnNames = {"story_id", "user_id"}))
 public class StoryView {
 
     @Id
@@ -0,0 +1,36 @@
+package com.example.instaKing.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
+
+/**
+ * Денормализованные счетчики профиля. Строку ведет UserStatsService атомарными инкрементами,
+ * расхождения исправляет периодическая сверка.
+ */
+@Entity
+@Data
+@Table(name = "user_stats")
+public class UserStats {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    // подписчики пользователя
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private int followers;
+
+    // подписки пользователя
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private int following;
+
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private int posts;
+
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private int stories;
+}
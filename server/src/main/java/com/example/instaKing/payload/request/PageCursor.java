@@ -0,0 +1,37 @@
+package com.example.instaKing.payload.request;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Непрозрачный курсор для keyset-пагинации по (createdAt, id).
+ */
+public record PageCursor(LocalDateTime createdAt, Long id) {
+
+    private static final String SEPARATOR = "|";
+    public static final int MAX_PAGE_SIZE = 100;
+
+    public static int pageSize(int requested) {
+        return Math.clamp(requested, 1, MAX_PAGE_SIZE);
+    }
+
+    public String encode() {
+        String raw = createdAt + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int at = raw.lastIndexOf(SEPARATOR);
+            return new PageCursor(LocalDateTime.parse(raw.substring(0, at)), Long.parseLong(raw.substring(at + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token);
+        }
+    }
+}
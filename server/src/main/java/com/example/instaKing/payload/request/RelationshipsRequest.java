@@ -0,0 +1,15 @@
+package com.example.instaKing.payload.request;
+
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class RelationshipsRequest {
+    @Size(max = 500, message = "No more than 500 usernames per request")
+    private List<String> usernames = new ArrayList<>();
+    @Size(max = 500, message = "No more than 500 ids per request")
+    private List<Long> ids = new ArrayList<>();
+}
@@ -0,0 +1,31 @@
+package com.example.instaKing.payload.request;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Непрозрачный курсор для выдачи поиска по релевантности: (score, id) последнего результата страницы.
+ */
+public record SearchCursor(float score, long id) {
+
+    private static final String SEPARATOR = "|";
+
+    public String encode() {
+        String raw = Float.floatToIntBits(score) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SearchCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int at = raw.indexOf(SEPARATOR);
+            return new SearchCursor(Float.intBitsToFloat(Integer.parseInt(raw.substring(0, at))),
+                    Long.parseLong(raw.substring(at + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.instaKing.payload.response;
+
+import com.example.instaKing.payload.request.PageCursor;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+import java.util.function.Function;
+
+@Data
+@AllArgsConstructor
+public class CursorPageResponse<T> {
+    private List<T> items;
+    private String nextCursor;
+    private boolean hasMore;
+
+    /**
+     * fetched - результат запроса с лимитом size + 1, лишняя запись означает, что есть следующая страница.
+     */
+    public static <E, T> CursorPageResponse<T> of(List<E> fetched,
+                                                  int size,
+                                                  Function<List<E>, List<T>> mapper,
+                                                  Function<E, PageCursor> cursorOf) {
+        boolean hasMore = fetched.size() > size;
+        List<E> page = hasMore ? fetched.subList(0, size) : fetched;
+        String nextCursor = hasMore ? cursorOf.apply(page.get(page.size() - 1)).encode() : null;
+        return new CursorPageResponse<>(mapper.apply(page), nextCursor, hasMore);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.instaKing.payload.response;
+
+import com.example.instaKing.dto.PostJson;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class FeedResponse {
+    private List<PostJson> posts;
+    private Long nextCursor;
+}
@@ -1,6 +1,6 @@
 package com.example.instaKing.payload.response;
 
-import com.example.instaKing.dto.PostDTO;
+import com.example.instaKing.dto.PostJson;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
@@ -9,7 +9,7 @@ import java.util.List;
 @Data
 @AllArgsConstructor
 public class PostPageResponse {
-    private List<PostDTO> posts;
+    private List<PostJson> posts;
     private long totalElements;
     private int totalPages;
     private int pageNumber;
@@ -2,11 +2,16 @@ package com.example.instaKing.repositories;
 
 import com.example.instaKing.models.Comment;
 import com.example.instaKing.models.Post;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -17,4 +22,21 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
     long countCommentsByPost(Post post);
     Page<Comment> findByPostId(Long postId, Pageable pageable);
 
+    @Query("SELECT c FROM Comment c WHERE c.post.id = :postId ORDER BY c.createdDate DESC, c.id DESC")
+    List<Comment> findLatestByPostId(@Param("postId") Long postId, Limit limit);
+
+    @Query("SELECT c FROM Comment c WHERE c.post.id = :postId AND (c.createdDate, c.id) < (:createdAt, :id) " +
+            "ORDER BY c.createdDate DESC, c.id DESC")
+    List<Comment> findLatestByPostIdBefore(@Param("postId") Long postId,
+                                           @Param("createdAt") LocalDateTime createdAt,
+                                           @Param("id") Long id,
+                                           Limit limit);
+
+    // Последние :perPost комментариев каждого поста из списка
+    @Query(value = "SELECT ranked.id, ranked.post_id, ranked.username, ranked.user_id, ranked.message, ranked.created_date " +
+            "FROM (SELECT c.*, row_number() OVER (PARTITION BY c.post_id ORDER BY c.created_date DESC, c.id DESC) AS rn " +
+            "FROM comment c WHERE c.post_id IN (:postIds)) ranked " +
+            "WHERE ranked.rn <= :perPost ORDER BY ranked.post_id, ranked.created_date DESC, ranked.id DESC", nativeQuery = true)
+    List<Comment> findLatestForPosts(@Param("postIds") Collection<Long> postIds, @Param("perPost") int perPost);
+
 }
@@ -4,8 +4,11 @@ import com.example.instaKing.models.Favorite;
 import com.example.instaKing.models.Post;
 import com.example.instaKing.models.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,6 +17,13 @@ public interface FavoriteRepository extends JpaRepository<Favorite, Integer> {
     List<Favorite> findByUser(User user);
     List<Favorite> findByUserOrderByAddedAtDesc(User user);
     boolean existsByUserAndPost(User user,Post post);
-    void  deleteByUserAndPost(User user, Post post);
+    long deleteByUserAndPost(User user, Post post);
     Optional<Favorite> findByUserAndPost(User user, Post post);
+
+    @Query("SELECT f FROM Favorite f JOIN FETCH f.post WHERE f.user = :user ORDER BY f.addedAt DESC")
+    List<Favorite> findWithPostByUser(@Param("user") User user);
+
+    // [postId, addedAt] для избранных постов из списка
+    @Query("SELECT f.post.id, f.addedAt FROM Favorite f WHERE f.user.id = :userId AND f.post.id IN :postIds")
+    List<Object[]> findAddedAtByUserAndPostIds(@Param("userId") Long userId, @Param("postIds") Collection<Long> postIds);
 }
@@ -3,6 +3,7 @@ package com.example.instaKing.repositories;
 import com.example.instaKing.models.Conversation;
 import com.example.instaKing.models.Message;
 import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -10,6 +11,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,6 +20,17 @@ public interface MessageRepository extends JpaRepository<Message,Long> {
     // Поиск сообщений с пагинацией
     Page<Message> findByConversationId(Long conversationId, Pageable pageable);
 
+    // Keyset-пагинация без count(*)
+    @Query("SELECT m FROM Message m WHERE m.conversation.id = :convId ORDER BY m.createdAt DESC, m.id DESC")
+    List<Message> findLatestByConversationId(@Param("convId") Long conversationId, Limit limit);
+
+    @Query("SELECT m FROM Message m WHERE m.conversation.id = :convId AND (m.createdAt, m.id) < (:createdAt, :id) " +
+            "ORDER BY m.createdAt DESC, m.id DESC")
+    List<Message> findLatestByConversationIdBefore(@Param("convId") Long conversationId,
+                                                   @Param("createdAt") LocalDateTime createdAt,
+                                                   @Param("id") Long id,
+                                                   Limit limit);
+
     // Поиск самого последнего сообщения
     Optional<Message> findTopByConversationIdOrderByCreatedAtDesc(Long conversationId);
 
@@ -0,0 +1,52 @@
+package com.example.instaKing.repositories;
+
+import com.example.instaKing.models.PostLike;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PostLikeRepository extends JpaRepository<PostLike, Long> {
+
+    // 1 - лайк добавлен, 0 - уже был
+    @Modifying
+    @Query(value = "INSERT INTO post_like (post_id, user_id, created_at) VALUES (:postId, :userId, now()) " +
+            "ON CONFLICT (post_id, user_id) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("postId") Long postId, @Param("userId") Long userId);
+
+    @Modifying
+    @Query("DELETE FROM PostLike l WHERE l.post.id = :postId AND l.user.id = :userId")
+    int deleteByPostIdAndUserId(@Param("postId") Long postId, @Param("userId") Long userId);
+
+    @Modifying
+    @Query("DELETE FROM PostLike l WHERE l.post.id = :postId")
+    void deleteAllByPostId(@Param("postId") Long postId);
+
+    // [postId, username, avatarUrl]: последние :perPost лайкнувших каждый пост из списка
+    @Query(value = "SELECT ranked.post_id, ranked.username, ranked.avatar_url FROM (" +
+            "SELECT l.post_id, u.username, u.avatar_url, " +
+            "row_number() OVER (PARTITION BY l.post_id ORDER BY l.created_at DESC, l.id DESC) AS rn " +
+            "FROM post_like l JOIN users u ON u.id = l.user_id WHERE l.post_id IN (:postIds)) ranked " +
+            "WHERE ranked.rn <= :perPost ORDER BY ranked.post_id, ranked.rn", nativeQuery = true)
+    List<Object[]> findLikerPreview(@Param("postIds") Collection<Long> postIds, @Param("perPost") int perPost);
+
+    @Query("SELECT l.post.id FROM PostLike l WHERE l.user.id = :userId AND l.post.id IN :postIds")
+    List<Long> findLikedPostIds(@Param("userId") Long userId, @Param("postIds") Collection<Long> postIds);
+
+    @Query("SELECT l FROM PostLike l JOIN FETCH l.user WHERE l.post.id = :postId ORDER BY l.createdAt DESC, l.id DESC")
+    List<PostLike> findLatestByPostId(@Param("postId") Long postId, Limit limit);
+
+    @Query("SELECT l FROM PostLike l JOIN FETCH l.user WHERE l.post.id = :postId AND (l.createdAt, l.id) < (:createdAt, :id) " +
+            "ORDER BY l.createdAt DESC, l.id DESC")
+    List<PostLike> findLatestByPostIdBefore(@Param("postId") Long postId,
+                                            @Param("createdAt") LocalDateTime createdAt,
+                                            @Param("id") Long id,
+                                            Limit limit);
+}
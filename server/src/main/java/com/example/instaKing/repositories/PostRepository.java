@@ -2,11 +2,21 @@ package com.example.instaKing.repositories;
 
 import com.example.instaKing.models.Post;
 import com.example.instaKing.models.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long> {
@@ -15,4 +25,35 @@ public interface PostRepository extends JpaRepository<Post, Long> {
      List<Post> findByOrderByCreatedAtDesc();
 
     Optional<Post> findByIdAndUser(Long id, User user);
+
+    @Query("SELECT p.id FROM Post p WHERE p.user.id IN :userIds AND p.id < :beforeId ORDER BY p.id DESC")
+    List<Long> findIdsByUserIdsBefore(@Param("userIds") Collection<Long> userIds,
+                                      @Param("beforeId") Long beforeId,
+                                      Limit limit);
+
+    @Modifying
+    @Query("UPDATE Post p SET p.commentCount = p.commentCount + :delta WHERE p.id = :postId")
+    int addCommentCount(@Param("postId") Long postId, @Param("delta") int delta);
+
+    @Query("SELECT p.commentCount FROM Post p WHERE p.id = :postId")
+    Optional<Integer> findCommentCount(@Param("postId") Long postId);
+
+    // Для выгрузки: Postgres отдает строки курсором пачками по fetchSize (нужна открытая транзакция)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "200"))
+    @Query("SELECT p FROM Post p ORDER BY p.createdAt DESC, p.id DESC")
+    Stream<Post> streamAll();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "200"))
+    @Query("SELECT p FROM Post p WHERE p.user.id = :userId ORDER BY p.createdAt DESC, p.id DESC")
+    Stream<Post> streamByUserId(@Param("userId") Long userId);
+
+    // [id, likes, favorites, commentCount]
+    @Query("SELECT p.id, p.likes, p.favorites, p.commentCount FROM Post p WHERE p.id IN :ids")
+    List<Object[]> findCounters(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT p FROM Post p ORDER BY p.createdAt DESC, p.id DESC")
+    List<Post> findLatest(Limit limit);
+
+    @Query("SELECT p FROM Post p WHERE (p.createdAt, p.id) < (:createdAt, :id) ORDER BY p.createdAt DESC, p.id DESC")
+    List<Post> findLatestBefore(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Limit limit);
 }
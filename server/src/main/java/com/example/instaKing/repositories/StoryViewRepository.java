@@ -2,11 +2,19 @@ package com.example.instaKing.repositories;
 
 import com.example.instaKing.models.Story;
 import com.example.instaKing.models.StoryView;
+import com.example.instaKing.repositories.projections.StoryViewerView;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface StoryViewRepository extends JpaRepository<StoryView, Long> {
 
     List<StoryView> getStoryViewByStory(Story story);
+
+    @Query("SELECT v.story.id AS storyId, u.username AS username, v.viewedAt AS viewedAt " +
+            "FROM StoryView v JOIN v.user u WHERE v.story.id IN :storyIds")
+    List<StoryViewerView> findViewers(@Param("storyIds") Collection<Long> storyIds);
 }
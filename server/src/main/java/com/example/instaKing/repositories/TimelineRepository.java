@@ -0,0 +1,37 @@
+package com.example.instaKing.repositories;
+
+import com.example.instaKing.models.TimelineEntry;
+import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface TimelineRepository extends JpaRepository<TimelineEntry, Long> {
+
+    @Query("SELECT t.postId FROM TimelineEntry t WHERE t.userId = :userId ORDER BY t.postId DESC")
+    List<Long> findPostIds(@Param("userId") Long userId, Limit limit);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TimelineEntry t WHERE t.postId = :postId")
+    void deleteByPostId(@Param("postId") Long postId);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TimelineEntry t WHERE t.userId = :userId AND t.authorId = :authorId")
+    void deleteByUserIdAndAuthorId(@Param("userId") Long userId, @Param("authorId") Long authorId);
+
+    // Обрезаем каждую ленту до :capacity последних постов
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM timeline_entry WHERE id IN (" +
+            "SELECT id FROM (SELECT id, row_number() OVER (PARTITION BY user_id ORDER BY post_id DESC) AS rn " +
+            "FROM timeline_entry) ranked WHERE ranked.rn > :capacity)", nativeQuery = true)
+    int trimToCapacity(@Param("capacity") int capacity);
+}
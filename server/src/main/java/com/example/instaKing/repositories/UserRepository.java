@@ -1,11 +1,15 @@
 package com.example.instaKing.repositories;
 
 import com.example.instaKing.models.User;
+import com.example.instaKing.repositories.projections.FollowView;
+import com.example.instaKing.repositories.projections.UserAvatarView;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,10 +23,58 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     List<User> findAllByFollowing_Username(String username);
 
-    List<User> findAllByUsernameContaining(String username);
-
     User getUserByUsername(String username);
 
+    @Query("SELECT u FROM User u LEFT JOIN FETCH u.roles WHERE u.username = :username")
+    Optional<User> findWithRolesByUsername(@Param("username") String username);
+
+    @Query("SELECT DISTINCT u FROM User u LEFT JOIN FETCH u.roles WHERE u.username IN :usernames")
+    List<User> findWithRolesByUsernameIn(@Param("usernames") Collection<String> usernames);
+
+    @Query("SELECT u FROM User u LEFT JOIN FETCH u.roles WHERE u.id = :id")
+    Optional<User> findWithRolesById(@Param("id") Long id);
+
+    @Query("SELECT DISTINCT u FROM User u LEFT JOIN FETCH u.roles WHERE u.id IN :ids")
+    List<User> findWithRolesByIdIn(@Param("ids") Collection<Long> ids);
+
     @Query("SELECT u.avatarUrl FROM User u WHERE u.username = :username")
     Optional<String> findAvatarUrlByUsername(@Param("username") String username);
+
+    @Query("SELECT u.id AS id, u.username AS username, u.avatarUrl AS avatarUrl FROM User u WHERE u.id IN :ids")
+    List<UserAvatarView> findAvatarsByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT u.id AS id, u.username AS username, u.avatarUrl AS avatarUrl FROM User u " +
+            "WHERE u.username IN :usernames OR u.id IN :ids")
+    List<UserAvatarView> findAvatarsByUsernamesOrIds(@Param("usernames") Collection<String> usernames,
+                                                     @Param("ids") Collection<Long> ids);
+
+    @Query("SELECT u.id FROM User u WHERE u.username = :username")
+    Optional<Long> findIdByUsername(@Param("username") String username);
+
+    // В user_following строка (follower_id = A, following_id = B) означает, что B подписан на A
+    @Query(value = "SELECT uf.follower_id FROM user_following uf GROUP BY uf.follower_id HAVING count(*) > :threshold",
+            nativeQuery = true)
+    List<Long> findUserIdsWithSubscribersOver(@Param("threshold") long threshold);
+
+    // Страница подписчиков от новых к старым, курсор (followedAt, id) последней строки предыдущей страницы
+    @Query(value = "SELECT u.id AS id, u.username AS username, u.avatar_url AS avatarUrl, uf.followed_at AS followedAt " +
+            "FROM user_following uf JOIN users u ON u.id = uf.following_id " +
+            "WHERE uf.follower_id = :userId " +
+            "AND (uf.followed_at < :before OR (uf.followed_at = :before AND uf.following_id < :beforeId)) " +
+            "ORDER BY uf.followed_at DESC, uf.following_id DESC LIMIT :limit", nativeQuery = true)
+    List<FollowView> findSubscribersBefore(@Param("userId") Long userId,
+                                           @Param("before") LocalDateTime before,
+                                           @Param("beforeId") Long beforeId,
+                                           @Param("limit") int limit);
+
+    // Страница подписок пользователя
+    @Query(value = "SELECT u.id AS id, u.username AS username, u.avatar_url AS avatarUrl, uf.followed_at AS followedAt " +
+            "FROM user_following uf JOIN users u ON u.id = uf.follower_id " +
+            "WHERE uf.following_id = :userId " +
+            "AND (uf.followed_at < :before OR (uf.followed_at = :before AND uf.follower_id < :beforeId)) " +
+            "ORDER BY uf.followed_at DESC, uf.follower_id DESC LIMIT :limit", nativeQuery = true)
+    List<FollowView> findSubscriptionsBefore(@Param("userId") Long userId,
+                                             @Param("before") LocalDateTime before,
+                                             @Param("beforeId") Long beforeId,
+                                             @Param("limit") int limit);
 }
@@ -0,0 +1,27 @@
+package com.example.instaKing.repositories;
+
+import com.example.instaKing.models.UserStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserStatsRepository extends JpaRepository<UserStats, Long> {
+
+    // строка создается при первом изменении, дальше только прибавляем
+    @Modifying
+    @Query(value = "INSERT INTO user_stats (user_id, followers, following, posts, stories) " +
+            "VALUES (:userId, :followers, :following, :posts, :stories) " +
+            "ON CONFLICT (user_id) DO UPDATE SET " +
+            "followers = user_stats.followers + EXCLUDED.followers, " +
+            "following = user_stats.following + EXCLUDED.following, " +
+            "posts = user_stats.posts + EXCLUDED.posts, " +
+            "stories = user_stats.stories + EXCLUDED.stories", nativeQuery = true)
+    void increment(@Param("userId") Long userId,
+                   @Param("followers") int followers,
+                   @Param("following") int following,
+                   @Param("posts") int posts,
+                   @Param("stories") int stories);
+}
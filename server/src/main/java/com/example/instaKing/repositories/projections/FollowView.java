@@ -0,0 +1,13 @@
+package com.example.instaKing.repositories.projections;
+
+import java.time.LocalDateTime;
+
+public interface FollowView {
+    Long getId();
+
+    String getUsername();
+
+    String getAvatarUrl();
+
+    LocalDateTime getFollowedAt();
+}
@@ -0,0 +1,11 @@
+package com.example.instaKing.repositories.projections;
+
+import java.time.LocalDateTime;
+
+public interface StoryViewerView {
+    Long getStoryId();
+
+    String getUsername();
+
+    LocalDateTime getViewedAt();
+}
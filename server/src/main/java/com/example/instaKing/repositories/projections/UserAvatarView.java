@@ -0,0 +1,9 @@
+package com.example.instaKing.repositories.projections;
+
+public interface UserAvatarView {
+    Long getId();
+
+    String getUsername();
+
+    String getAvatarUrl();
+}
@@ -0,0 +1,28 @@
+package com.example.instaKing.security;
+
+import com.example.instaKing.models.enums.ERole;
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Текущий пользователь запроса, собранный из claims access-токена без обращения к БД.
+ * Кладется в Authentication как principal, principal.getName() возвращает username.
+ * В контроллеры внедряется параметром типа CurrentUser (см. CurrentUserArgumentResolver).
+ */
+public record CurrentUser(Long id, String username, Set<ERole> roles) implements AuthenticatedPrincipal {
+
+    @Override
+    public String getName() {
+        return username;
+    }
+
+    public List<GrantedAuthority> authorities() {
+        return roles.stream()
+                .<GrantedAuthority>map(role -> new SimpleGrantedAuthority(role.name()))
+                .toList();
+    }
+}
@@ -1,7 +1,7 @@
 package com.example.instaKing.security;
 
-import com.example.instaKing.models.User;
 import com.example.instaKing.services.CustomUserDetailsService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -10,7 +10,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -35,15 +34,18 @@ public class JWTAuthenticationFilter extends OncePerRequestFilter {
 
         try {
             String jwt = getJWTFromRequest(request);
-            if (StringUtils.hasText(jwt) && tokenProvider.validateToken(jwt, false, SecurityConstants.ACCESS_SECRET)) {
-                if (!"access".equals(tokenProvider.getTokenType(jwt, false, SecurityConstants.ACCESS_SECRET))) {
+            // токен проверяется один раз, дальше работаем с его claims
+            Claims claims = StringUtils.hasText(jwt)
+                    ? tokenProvider.parseToken(jwt, false, SecurityConstants.ACCESS_SECRET)
+                    : null;
+            if (claims != null) {
+                if (!"access".equals(claims.get("tokenType"))) {
                     filterChain.doFilter(request, response);
                     return;
                 }
-                Long userId = tokenProvider.getUserIdFromToken(jwt, false, SecurityConstants.ACCESS_SECRET);
-                UserDetails userDetails = customUserDetailsService.loadUserById(userId);
+                CurrentUser currentUser = getCurrentUser(claims);
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities());
+                        currentUser, null, currentUser.authorities());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authentication);
 
@@ -61,6 +63,16 @@ public class JWTAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    // Пользователь берется из claims без запроса к БД; токены старого формата дочитываются через UserCache
+    private CurrentUser getCurrentUser(Claims claims) {
+        CurrentUser currentUser = tokenProvider.getCurrentUser(claims);
+        if (currentUser != null) {
+            return currentUser;
+        }
+        Long userId = Long.parseLong(String.valueOf(claims.get("userId")));
+        return customUserDetailsService.loadCurrentUserById(userId);
+    }
+
     private String getJWTFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader(SecurityConstants.HEADER_STRING);
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith(SecurityConstants.TOKEN_PREFIX)) {
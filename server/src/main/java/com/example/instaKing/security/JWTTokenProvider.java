@@ -1,22 +1,43 @@
 package com.example.instaKing.security;
 
 import com.example.instaKing.models.User;
+import com.example.instaKing.models.enums.ERole;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
+import io.jsonwebtoken.security.SecurityException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.SecretKey;
 
 @Component
 public class JWTTokenProvider {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JWTTokenProvider.class);
 
+    private final long verifiedCacheSize;
+    private final Map<SecretKey, Verifier> verifiers = new ConcurrentHashMap<>();
+
+    public JWTTokenProvider(@Value("${app.jwt.verified-cache-size:10000}") long verifiedCacheSize) {
+        this.verifiedCacheSize = verifiedCacheSize;
+    }
+
     public String generateAccessToken(Authentication authentication) {
         User user = (User) authentication.getPrincipal();
         Date now = new Date();
@@ -38,7 +59,11 @@ public class JWTTokenProvider {
         claims.put("userId", user.getId());
         claims.put("tokenType", type);
         if ("access".equals(type)) {
+            // id, username и роли достаточно для аутентификации запроса без БД
             claims.put("username", user.getUsername());
+            claims.put("roles", user.getAuthorities().stream()
+                    .map(GrantedAuthority::getAuthority)
+                    .toList());
         }
 
         return Jwts.builder()
@@ -50,10 +75,13 @@ public class JWTTokenProvider {
                 .compact();
     }
 
-    public boolean validateToken(String token, boolean isRefresh,Key secret) {
+    /**
+     * Проверенные claims токена или null, если токен невалиден или истек.
+     * Подпись проверяется один раз: повторы того же токена до его exp берутся из кэша.
+     */
+    public Claims parseToken(String token, boolean isRefresh, SecretKey secret) {
         try {
-            getClaims(token, isRefresh,secret);
-            return true;
+            return getClaims(token, isRefresh, secret);
         } catch (MalformedJwtException e) {
             LOGGER.error("Невалидный JWT токен: {}", e.getMessage());
         } catch (ExpiredJwtException e) {
@@ -62,25 +90,85 @@ public class JWTTokenProvider {
             LOGGER.error("Неподдерживаемый JWT токен: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
             LOGGER.error("Пустое тело JWT токена: {}", e.getMessage());
+        } catch (SecurityException e) {
+            LOGGER.error("Неверная подпись JWT токена: {}", e.getMessage());
         }
-        return false;
+        return null;
     }
 
-    public Long getUserIdFromToken(String token, boolean isRefresh, Key secret) {
+    public boolean validateToken(String token, boolean isRefresh, SecretKey secret) {
+        return parseToken(token, isRefresh, secret) != null;
+    }
+
+    public Long getUserIdFromToken(String token, boolean isRefresh, SecretKey secret) {
         Object id = getClaims(token, isRefresh,secret).get("userId");
         return Long.parseLong(String.valueOf(id));
     }
 
 
-    public String getTokenType(String token, boolean isRefresh, Key secret) {
+    /**
+     * Пользователь из claims access-токена; null, если токен выдан до появления в нем username и ролей.
+     */
+    public CurrentUser getCurrentUser(Claims claims) {
+        Object username = claims.get("username");
+        if (!(username instanceof String) || !(claims.get("roles") instanceof Collection<?> roleNames)) {
+            return null;
+        }
+        Set<ERole> roles = EnumSet.noneOf(ERole.class);
+        for (Object roleName : roleNames) {
+            roles.add(ERole.valueOf(String.valueOf(roleName)));
+        }
+        Long id = Long.parseLong(String.valueOf(claims.get("userId")));
+        return new CurrentUser(id, (String) username, roles);
+    }
+
+    public String getTokenType(String token, boolean isRefresh, SecretKey secret) {
         return String.valueOf(getClaims(token, isRefresh,secret).get("tokenType"));
     }
 
-    private Claims getClaims(String token, boolean isRefresh,Key secret) {
-        return Jwts.parser()
-                .setSigningKey(secret)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    private Claims getClaims(String token, boolean isRefresh, SecretKey secret) {
+        return verifiers.computeIfAbsent(secret, key -> new Verifier(key, verifiedCacheSize)).verify(token);
+    }
+
+    /**
+     * Парсер для ключа собирается один раз. Кэш хранит claims уже проверенных токенов,
+     * ключ - сама строка токена, поэтому совпадение означает ту же подпись.
+     * Запись живет до exp токена, истекший токен снова уходит в парсер и отклоняется им.
+     */
+    private static final class Verifier {
+        private final JwtParser parser;
+        private final Cache<String, Claims> verified;
+
+        Verifier(SecretKey secret, long cacheSize) {
+            this.parser = Jwts.parser()
+                    .verifyWith(secret)
+                    .build();
+            // cacheSize = 0 отключает кэш
+            this.verified = cacheSize <= 0 ? null : Caffeine.newBuilder()
+                    .maximumSize(cacheSize)
+                    .expireAfter(Expiry.<String, Claims>creating((token, claims) -> untilExpiration(claims)))
+                    .build();
+        }
+
+        Claims verify(String token) {
+            if (verified == null) {
+                return parser.parseSignedClaims(token).getPayload();
+            }
+            Claims claims = verified.getIfPresent(token);
+            if (claims == null) {
+                claims = parser.parseSignedClaims(token).getPayload();
+                verified.put(token, claims);
+            }
+            return claims;
+        }
+
+        private static Duration untilExpiration(Claims claims) {
+            Date expiration = claims.getExpiration();
+            if (expiration == null) {
+                return Duration.ZERO;
+            }
+            long millis = expiration.getTime() - System.currentTimeMillis();
+            return Duration.ofMillis(Math.max(millis, 0));
+        }
     }
 }
@@ -4,15 +4,15 @@ import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.io.Decoders;
 
-import java.security.Key;
+import javax.crypto.SecretKey;
 
 public class SecurityConstants {
 
     public static final String SIGN_UP_URLS = "/api/auth/**";
 
 
-    public static final Key ACCESS_SECRET = loadOrGenerateKey("JWT_ACCESS_SECRET_BASE64");
-    public static final Key REFRESH_SECRET = loadOrGenerateKey("JWT_REFRESH_SECRET_BASE64");
+    public static final SecretKey ACCESS_SECRET = loadOrGenerateKey("JWT_ACCESS_SECRET_BASE64");
+    public static final SecretKey REFRESH_SECRET = loadOrGenerateKey("JWT_REFRESH_SECRET_BASE64");
     public static final String TOKEN_PREFIX = "Bearer ";
 
     public static final String HEADER_STRING = "Authorization";
@@ -24,7 +24,7 @@ public class SecurityConstants {
     public static final long ACCESS_EXPIRATION_TIME = 1000*60*15;
     public static final long REFRESH_EXPIRATION_TIME =1000L*60*60*24*7;
 
-    private static Key loadOrGenerateKey(String envVarName) {
+    private static SecretKey loadOrGenerateKey(String envVarName) {
         String base64 = System.getenv(envVarName);
         if (base64 == null || base64.isBlank()) {
             base64 = System.getProperty(envVarName);
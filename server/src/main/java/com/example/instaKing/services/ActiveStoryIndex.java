@@ -0,0 +1,143 @@
+package com.example.instaKing.services;
+
+import com.example.instaKing.models.Story;
+import com.example.instaKing.models.enums.StoryVisibility;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Активные истории в памяти: для каждого автора неизменяемый список метаданных по времени создания.
+ * Истории живут сутки, поэтому набор небольшой. Чтение отбрасывает истекшие по expiresAt,
+ * из памяти они убираются по DelayQueue раз в app.stories.active-evict-interval-ms.
+ * Загружается при старте, создание и удаление историй применяются после коммита.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory") // таблицы должны быть созданы hibernate до загрузки
+public class ActiveStoryIndex {
+
+    private static final String LOAD = "SELECT id, user_id, media_url, description, visibility, created_at, expires_at " +
+            "FROM story WHERE expires_at > ? ORDER BY user_id, created_at, id";
+
+    private static final Comparator<ActiveStory> BY_CREATED =
+            Comparator.comparing(ActiveStory::createdAt).thenComparing(ActiveStory::id);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Long, List<ActiveStory>> byUser = new ConcurrentHashMap<>();
+    private final DelayQueue<Expiration> expirations = new DelayQueue<>();
+
+    public ActiveStoryIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void load() {
+        byUser.clear();
+        expirations.clear();
+        Map<Long, List<ActiveStory>> loaded = new HashMap<>();
+        jdbcTemplate.query(LOAD, rs -> {
+            String visibility = rs.getString(5);
+            ActiveStory story = new ActiveStory(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getString(4),
+                    visibility == null ? null : StoryVisibility.valueOf(visibility),
+                    rs.getTimestamp(6).toLocalDateTime(), rs.getTimestamp(7).toLocalDateTime());
+            loaded.computeIfAbsent(story.userId(), id -> new ArrayList<>()).add(story);
+            expirations.add(new Expiration(story));
+        }, Timestamp.valueOf(LocalDateTime.now()));
+        loaded.forEach((userId, stories) -> byUser.put(userId, List.copyOf(stories)));
+        log.info("Active stories: {} stories of {} users", expirations.size(), byUser.size());
+    }
+
+    /**
+     * Неистекшие истории автора, от старых к новым.
+     */
+    public List<ActiveStory> getActiveStories(long userId) {
+        List<ActiveStory> stories = byUser.get(userId);
+        if (stories == null) {
+            return List.of();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        return stories.stream().filter(story -> story.isActive(now)).toList();
+    }
+
+    public boolean hasActiveStories(long userId) {
+        List<ActiveStory> stories = byUser.get(userId);
+        if (stories == null) {
+            return false;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        return stories.stream().anyMatch(story -> story.isActive(now));
+    }
+
+    public void onStoryCreated(Story story) {
+        ActiveStory active = new ActiveStory(story.getId(), story.getUser().getId(), story.getMediaUrl(),
+                story.getDescription(), story.getVisibility(), story.getCreatedAt(), story.getExpiresAt());
+        AfterCommit.run(() -> {
+            byUser.compute(active.userId(), (id, stories) -> {
+                List<ActiveStory> updated = stories == null ? new ArrayList<>() : new ArrayList<>(stories);
+                updated.add(active);
+                updated.sort(BY_CREATED);
+                return List.copyOf(updated);
+            });
+            expirations.add(new Expiration(active));
+        });
+    }
+
+    public void onStoryDeleted(long userId, long storyId) {
+        AfterCommit.run(() -> remove(userId, storyId));
+    }
+
+    @Scheduled(fixedDelayString = "${app.stories.active-evict-interval-ms:1000}")
+    public void evictExpired() {
+        Expiration expiration;
+        while ((expiration = expirations.poll()) != null) {
+            remove(expiration.story().userId(), expiration.story().id());
+        }
+    }
+
+    // null удаляет автора из map
+    private void remove(long userId, long storyId) {
+        byUser.computeIfPresent(userId, (id, stories) -> {
+            List<ActiveStory> updated = stories.stream().filter(story -> story.id() != storyId).toList();
+            return updated.isEmpty() ? null : updated;
+        });
+    }
+
+    public record ActiveStory(long id, long userId, String mediaUrl, String description,
+                              StoryVisibility visibility, LocalDateTime createdAt, LocalDateTime expiresAt) {
+
+        boolean isActive(LocalDateTime now) {
+            return expiresAt.isAfter(now);
+        }
+    }
+
+    private record Expiration(ActiveStory story) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            long expiresAtMillis = story.expiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            return unit.convert(expiresAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return story.expiresAt().compareTo(((Expiration) other).story().expiresAt());
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.instaKing.services;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Обновление in-memory состояния (счетчики, индексы, кэши) только после коммита:
+ * при откате транзакции память не должна расходиться с БД.
+ */
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    // вне транзакции действие выполняется сразу
+    public static void run(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -10,12 +10,14 @@ import com.example.instaKing.models.Message;
 import com.example.instaKing.models.User;
 import com.example.instaKing.models.enums.MessageStatus;
 import com.example.instaKing.models.enums.NotificationType;
+import com.example.instaKing.payload.request.PageCursor;
 import com.example.instaKing.repositories.ConversationRepository;
 import com.example.instaKing.repositories.MessageRepository;
 import io.micrometer.core.instrument.Measurement;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -142,6 +144,14 @@ public class ChatService {
         return messageRepository.findByConversationId(conversationId, pageable).getContent();
     }
 
+    public List<Message> getMessageHistoryBefore(Long conversationId, PageCursor cursor, int size) {
+        Limit limit = Limit.of(size + 1);
+        if (cursor == null) {
+            return messageRepository.findLatestByConversationId(conversationId, limit);
+        }
+        return messageRepository.findLatestByConversationIdBefore(conversationId, cursor.createdAt(), cursor.id(), limit);
+    }
+
     public boolean isUserParticipant(Long conversationId, String username) {
         return conversationRepository.findById(conversationId)
                 .map(c -> c.getParticipants().stream()
@@ -2,15 +2,19 @@ package com.example.instaKing.services;
 
 import com.example.instaKing.dto.CommentDTO;
 import com.example.instaKing.exceptions.PostNotFoundException;
+import com.example.instaKing.facade.PostFragmentCache;
 import com.example.instaKing.models.Comment;
 import com.example.instaKing.models.Post;
 import com.example.instaKing.models.User;
 import com.example.instaKing.models.enums.NotificationType;
+import com.example.instaKing.payload.request.PageCursor;
 import com.example.instaKing.repositories.CommentRepository;
 import com.example.instaKing.repositories.PostRepository;
 import com.example.instaKing.repositories.UserRepository;
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -30,25 +34,35 @@ public class CommentService {
     private final PostRepository postRepository;
     private final UserRepository userRepository;
     private final NotificationService notificationService;
+    private final TrendingService trendingService;
+    private final PostFragmentCache postFragmentCache;
+    private final PostSearchIndex postSearchIndex;
+    private final UserCache userCache;
 
+    @Transactional
     public Comment saveComment(Long postId, CommentDTO commentDTO, Principal principal) {
-        User user = getUserByPrincipal(principal);
+        UserCache.UserSummary author = getSummaryByPrincipal(principal);
         Post post = postRepository.findById(postId)
                 .orElseThrow(() -> new PostNotFoundException("PostService not found"));
 
         Comment comment = new Comment();
         comment.setPost(post);
-        comment.setUserId(user.getId());
-        comment.setUsername(user.getUsername());
+        comment.setUserId(author.id());
+        comment.setUsername(author.username());
         comment.setMessage(commentDTO.getMessage());
         User owner = post.getUser();
         notificationService.createNotification(
                 owner,
-                user,
+                userRepository.getReferenceById(author.id()),
                 NotificationType.COMMENT,
                 "оставил комментарий под вашим постом: "+post.getTitle()
         );
-        return commentRepository.save(comment);
+        Comment saved = commentRepository.save(comment);
+        postRepository.addCommentCount(postId, 1);
+        trendingService.onComment(post);
+        postFragmentCache.invalidate(postId);
+        postSearchIndex.enqueue(postId);
+        return saved;
     }
 
     public List<Comment> getAllCommentForPost(Long postId) {
@@ -59,19 +73,24 @@ public class CommentService {
     }
 
     public long getCountCommentForPost(Long postId) {
-        Post post=postRepository.findById(postId)
+        return postRepository.findCommentCount(postId)
                 .orElseThrow(() -> new PostNotFoundException("PostService not found"));
-        return commentRepository.countCommentsByPost(post);
     }
 
+    @Transactional
     public void deleteComment(Long commentId) {
         Optional<Comment> comment = commentRepository.findById(commentId);
-        comment.ifPresent(commentRepository::delete);
+        comment.ifPresent(c -> {
+            commentRepository.delete(c);
+            postRepository.addCommentCount(c.getPost().getId(), -1);
+            postFragmentCache.invalidate(c.getPost().getId());
+            postSearchIndex.enqueue(c.getPost().getId());
+        });
     }
 
-    private User getUserByPrincipal(Principal principal) {
+    private UserCache.UserSummary getSummaryByPrincipal(Principal principal) {
         String username = principal.getName();
-        return userRepository.findByUsername(username)
+        return userCache.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("username not found with username" + username));
     }
 
@@ -80,4 +99,12 @@ public class CommentService {
         return commentRepository.findByPostId(postId, pageable);
     }
 
+    public List<Comment> getCommentsBefore(Long postId, PageCursor cursor, int size) {
+        Limit limit = Limit.of(size + 1);
+        if (cursor == null) {
+            return commentRepository.findLatestByPostId(postId, limit);
+        }
+        return commentRepository.findLatestByPostIdBefore(postId, cursor.createdAt(), cursor.id(), limit);
+    }
+
 }
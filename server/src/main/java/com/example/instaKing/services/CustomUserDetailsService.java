@@ -2,7 +2,7 @@ package com.example.instaKing.services;
 
 import com.example.instaKing.models.User;
 import com.example.instaKing.repositories.UserRepository;
-import jakarta.transaction.Transactional;
+import com.example.instaKing.security.CurrentUser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -18,10 +18,12 @@ import java.util.stream.Collectors;
 public class CustomUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepository;
+    private final UserCache userCache;
 
     @Autowired
-    public CustomUserDetailsService(UserRepository userRepository) {
+    public CustomUserDetailsService(UserRepository userRepository, UserCache userCache) {
         this.userRepository = userRepository;
+        this.userCache = userCache;
     }
 
     public static User build(User user) {
@@ -43,13 +45,19 @@ public class CustomUserDetailsService implements UserDetailsService {
         return build(user);
     }
 
-    @Transactional // 1. Открываем транзакцию
+    // Для аутентификации запроса по токену: id, username и роли из UserCache, email и пароль не нужны
     public UserDetails loadUserById(Long id) {
-        User user = userRepository.findById(id)
+        UserCache.UserSummary summary = userCache.findById(id)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with id : " + id));
+        List<GrantedAuthority> authorities = summary.roles().stream()
+                .map(role -> new SimpleGrantedAuthority(role.name()))
+                .collect(Collectors.toList());
+        return new User(summary.id(), summary.username(), null, null, authorities);
+    }
 
-        // 2. Используем метод build(), чтобы инициализировать роли и заполнить authorities
-        return build(user);
-
+    public CurrentUser loadCurrentUserById(Long id) {
+        UserCache.UserSummary summary = userCache.findById(id)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with id : " + id));
+        return new CurrentUser(summary.id(), summary.username(), summary.roles());
     }
 }
@@ -4,6 +4,7 @@ import com.example.instaKing.dto.FavoriteDTO;
 import com.example.instaKing.dto.PostDTO;
 import com.example.instaKing.exceptions.PostNotFoundException;
 import com.example.instaKing.facade.Facade;
+import com.example.instaKing.facade.PostFragmentCache;
 import com.example.instaKing.models.Favorite;
 import com.example.instaKing.models.Post;
 import com.example.instaKing.models.User;
@@ -31,6 +32,10 @@ public class FavoriteService {
     private final PostRepository postRepository;
     private final Facade facade;
     private final NotificationService notificationService;
+    private final PostCounterAggregator postCounterAggregator;
+    private final TrendingService trendingService;
+    private final PostFragmentCache postFragmentCache;
+    private final UserCache userCache;
 
 
     public boolean toggleFavorite(Long userId, Long postId) {
@@ -42,6 +47,8 @@ public class FavoriteService {
         return favoriteRepository.findByUserAndPost(user, post)
                 .map(fav -> {
                     favoriteRepository.delete(fav);
+                    postCounterAggregator.add(PostCounterAggregator.Counter.FAVORITES, postId, -1);
+                    postFragmentCache.invalidate(postId);
                     return false;
                 })
                 .orElseGet(() -> {
@@ -50,6 +57,9 @@ public class FavoriteService {
                     favorite.setPost(post);
                     favorite.setAddedAt(LocalDateTime.now());
                     favoriteRepository.save(favorite);
+                    postCounterAggregator.add(PostCounterAggregator.Counter.FAVORITES, postId, 1);
+                    trendingService.onFavorite(post);
+                    postFragmentCache.invalidate(postId);
                     notificationService.createNotification(
                             post.getUser(),
                             user,
@@ -64,13 +74,16 @@ public class FavoriteService {
     public void removeFromFavorites(Principal principal,Long postId) {
         User user=getUserByPrincipal(principal);
         Post post=postRepository.findById(postId).orElseThrow();
-        favoriteRepository.deleteByUserAndPost(user,post);
+        if (favoriteRepository.deleteByUserAndPost(user,post) > 0) {
+            postCounterAggregator.add(PostCounterAggregator.Counter.FAVORITES, postId, -1);
+            postFragmentCache.invalidate(postId);
+        }
     }
 
 
     public List<Post> getFavorites(Long userId) {
         User user=userRepository.findById(userId).orElseThrow();
-        return favoriteRepository.findByUserOrderByAddedAtDesc(user).stream()
+        return favoriteRepository.findWithPostByUser(user).stream()
                 .map(Favorite::getPost)
                 .collect(Collectors.toList());
     }
@@ -78,7 +91,8 @@ public class FavoriteService {
 
     private User getUserByPrincipal(Principal principal) {
         String username = principal.getName();
-        return userRepository.findByUsername(username)
+        return userCache.findByUsername(username)
+                .map(summary -> userRepository.getReferenceById(summary.id()))
                 .orElseThrow(() -> new UsernameNotFoundException("username not found with username" + username));
     }
 }
\ No newline at end of file
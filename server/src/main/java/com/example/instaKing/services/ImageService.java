@@ -5,6 +5,7 @@ import com.example.instaKing.models.ImageModel;
 import com.example.instaKing.models.Post;
 import com.example.instaKing.models.User;
 import com.example.instaKing.repositories.ImageRepository;
+import com.example.instaKing.repositories.PostRepository;
 import com.example.instaKing.repositories.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -34,14 +35,20 @@ public class ImageService {
 
     private final ImageRepository imageRepository;
     private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final UserSearchIndex userSearchIndex;
+    private final UserCache userCache;
 
     @Value("${app.upload.path}")
     private String uploadPath;
 
     @Autowired
-    public ImageService(ImageRepository imageRepository, UserRepository userRepository) {
+    public ImageService(ImageRepository imageRepository, UserRepository userRepository, PostRepository postRepository, UserSearchIndex userSearchIndex, UserCache userCache) {
         this.imageRepository = imageRepository;
         this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.userSearchIndex = userSearchIndex;
+        this.userCache = userCache;
     }
 
     private String saveFileToDisk(MultipartFile file) throws IOException {
@@ -76,7 +83,9 @@ public class ImageService {
     }
 
     public void uploadAvatarToUser(MultipartFile file, Principal principal) throws IOException {
-        User user = getUserByPrincipal(principal);
+        // профиль меняется целиком, поэтому строка читается сразу, а не через прокси
+        User user = userRepository.findById(getUserId(principal))
+                .orElseThrow(() -> new UsernameNotFoundException("Username not found with username " + principal.getName()));
 
         if (user.getAvatarUrl() != null) {
             deleteFileFromDisk(user.getAvatarUrl());
@@ -85,13 +94,13 @@ public class ImageService {
         String fileName = saveFileToDisk(file);
         user.setAvatarUrl(fileName);
         userRepository.save(user);
+        userSearchIndex.index(user);
+        userCache.invalidate(user);
     }
 
     public ImageModel uploadImageToPost(MultipartFile file, Principal principal, Long postId) throws IOException {
-        User user = getUserByPrincipal(principal);
-        Post post = user.getPosts().stream()
-                .filter(p -> p.getId().equals(postId))
-                .findFirst()
+        User user = userRepository.getReferenceById(getUserId(principal));
+        Post post = postRepository.findByIdAndUser(postId, user)
                 .orElseThrow(() -> new ImageNotFoundException("Post not found in user's posts"));
 
         String fileName = saveFileToDisk(file);
@@ -140,9 +149,10 @@ public class ImageService {
         }
     }
 
-    private User getUserByPrincipal(Principal principal) {
+    private Long getUserId(Principal principal) {
         String username = principal.getName();
-        return userRepository.findByUsername(username)
+        return userCache.findByUsername(username)
+                .map(UserCache.UserSummary::id)
                 .orElseThrow(() -> new UsernameNotFoundException("Username not found with username " + username));
     }
 }
\ No newline at end of file
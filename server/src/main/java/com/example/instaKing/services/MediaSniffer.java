@@ -0,0 +1,64 @@
+package com.example.instaKing.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Определение типа медиафайла по сигнатуре в первых байтах (Content-Type от клиента не проверяется).
+ * Возвращает расширение, под которым файл сохраняется.
+ */
+public final class MediaSniffer {
+
+    // достаточно для всех сигнатур ниже
+    public static final int HEADER_SIZE = 16;
+
+    // Основные бренды ftyp видео (mp4, m4v, 3gp, QuickTime). Тот же контейнер у HEIC и AVIF
+    // (heic, mif1, avif...) - это изображения, браузеры их как видео не покажут
+    private static final Set<String> VIDEO_BRANDS = Set.of(
+            "isom", "iso2", "iso4", "iso5", "iso6", "mp41", "mp42", "avc1", "dash", "mmp4", "MSNV", "M4V ",
+            "3gp4", "3gp5", "3gp6", "3g2a", "qt  ");
+
+    private MediaSniffer() {
+    }
+
+    public static Optional<String> detect(byte[] header) {
+        if (startsWith(header, 0, 0xFF, 0xD8, 0xFF)) {
+            return Optional.of("jpg");
+        }
+        if (startsWith(header, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return Optional.of("png");
+        }
+        if (startsWith(header, 0, 'G', 'I', 'F', '8')) {
+            return Optional.of("gif");
+        }
+        if (startsWith(header, 0, 'R', 'I', 'F', 'F') && startsWith(header, 8, 'W', 'E', 'B', 'P')) {
+            return Optional.of("webp");
+        }
+        // ISO BMFF: тип определяет основной бренд ftyp, "qt  " - QuickTime
+        if (startsWith(header, 4, 'f', 't', 'y', 'p') && header.length >= 12) {
+            String brand = new String(header, 8, 4, StandardCharsets.ISO_8859_1);
+            if (!VIDEO_BRANDS.contains(brand)) {
+                return Optional.empty();
+            }
+            return Optional.of(brand.equals("qt  ") ? "mov" : "mp4");
+        }
+        // EBML: webm и mkv
+        if (startsWith(header, 0, 0x1A, 0x45, 0xDF, 0xA3)) {
+            return Optional.of("webm");
+        }
+        return Optional.empty();
+    }
+
+    private static boolean startsWith(byte[] header, int offset, int... signature) {
+        if (header.length < offset + signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if ((header[offset + i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.instaKing.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Накопитель изменений счетчиков постов (write-behind).
+ * Лайки и избранное копятся в LongAdder и раз в app.counters.flush-interval-ms
+ * сбрасываются в БД пачкой UPDATE, чтобы горячий пост не упирался в блокировку одной строки.
+ */
+@Slf4j
+@Component
+public class PostCounterAggregator {
+
+    public enum Counter {
+        LIKES("UPDATE post SET likes = likes + ? WHERE id = ?"),
+        FAVORITES("UPDATE post SET favorites = favorites + ? WHERE id = ?");
+
+        private final String sql;
+
+        Counter(String sql) {
+            this.sql = sql;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // Запись идет в current. При сбросе current уходит в retired и пишется в БД только на следующем
+    // тике: поток, успевший прочитать старую ссылку, за это время гарантированно закончит add().
+    // Три поколения публикуются одной ссылкой, чтобы pending() не видел промежуточной перестановки.
+    private volatile State state = new State(new Generation(), new Generation(), new Generation());
+
+    public PostCounterAggregator(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Изменение применяется после коммита текущей транзакции, если она есть.
+     */
+    public void add(Counter counter, Long postId, int delta) {
+        AfterCommit.run(() -> state.current().add(counter, postId, delta));
+    }
+
+    /**
+     * Еще не записанная в БД часть счетчика, прибавляется к значению из post.
+     */
+    public long pending(Counter counter, Long postId) {
+        State snapshot = state;
+        return snapshot.current().sum(counter, postId) + snapshot.retired().sum(counter, postId)
+                + snapshot.flushing().sum(counter, postId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.counters.flush-interval-ms:500}")
+    public synchronized void flush() {
+        // прошлая запись не удалась: пока она не пройдет, поколения не сдвигаются
+        if (!state.flushing().isEmpty() && !writeFlushing()) {
+            return;
+        }
+        State previous = state;
+        state = new State(new Generation(), previous.current(), previous.retired());
+        writeFlushing();
+    }
+
+    @PreDestroy
+    public synchronized void flushAll() {
+        // два сдвига: retired, затем бывший current
+        flush();
+        flush();
+        log.info("Pending post counters flushed on shutdown");
+    }
+
+    // Пишет flushing одной транзакцией. При ошибке поколение остается в flushing (и в pending) до следующего тика
+    private boolean writeFlushing() {
+        Generation generation = state.flushing();
+        Map<Counter, List<Object[]>> batches = new EnumMap<>(Counter.class);
+        for (Counter counter : Counter.values()) {
+            generation.counters.get(counter).forEach((postId, adder) -> {
+                long delta = adder.sum();
+                if (delta != 0) {
+                    batches.computeIfAbsent(counter, c -> new ArrayList<>()).add(new Object[]{delta, postId});
+                }
+            });
+        }
+        if (batches.isEmpty()) {
+            clearFlushing();
+            return true;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                batches.forEach((counter, batch) -> jdbcTemplate.batchUpdate(counter.sql, batch));
+                // поколение перестает учитываться в pending сразу после коммита, а не раньше
+                AfterCommit.run(this::clearFlushing);
+            });
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Failed to flush post counters: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void clearFlushing() {
+        State current = state;
+        state = new State(current.current(), current.retired(), new Generation());
+    }
+
+    private record State(Generation current, Generation retired, Generation flushing) {
+    }
+
+    private static final class Generation {
+        private final Map<Counter, Map<Long, LongAdder>> counters = new EnumMap<>(Counter.class);
+
+        Generation() {
+            for (Counter counter : Counter.values()) {
+                counters.put(counter, new ConcurrentHashMap<>());
+            }
+        }
+
+        void add(Counter counter, Long postId, long delta) {
+            counters.get(counter).computeIfAbsent(postId, id -> new LongAdder()).add(delta);
+        }
+
+        boolean isEmpty() {
+            return counters.values().stream().allMatch(Map::isEmpty);
+        }
+
+        long sum(Counter counter, Long postId) {
+            LongAdder adder = counters.get(counter).get(postId);
+            return adder == null ? 0 : adder.sum();
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.instaKing.services;
+
+import com.example.instaKing.payload.request.SearchCursor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.*;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Полнотекстовый поиск по постам на встроенном Lucene: заголовок, подпись, место и тексты комментариев.
+ * Изменения приходят id постов в очередь, фоновый поток перечитывает посты из БД и обновляет документы.
+ * Новые документы видны в поиске после refresh (app.search.refresh-interval-ms), на диск фиксируются раз в минуту.
+ * Пересборка не очищает индекс: документы перезаписываются с новым поколением, старые поколения удаляются
+ * в конце, поэтому поиск и промежуточные коммиты всегда видят полный индекс. Успешная пересборка отмечается
+ * в данных коммита; без отметки (первая сборка не дошла до конца) индекс пересобирается при старте.
+ */
+@Slf4j
+@Component
+public class PostSearchIndex {
+
+    private static final String ID = "id";
+    private static final String SORT_ID = "sort_id";
+    private static final String TITLE = "title";
+    private static final String CAPTION = "caption";
+    private static final String LOCATION = "location";
+    private static final String COMMENTS = "comments";
+    private static final String GENERATION = "generation";
+
+    // данные коммита: поколение последней завершенной пересборки
+    private static final String REBUILT = "rebuilt";
+    // сигнал потоку индексации завершиться
+    private static final long STOP = Long.MIN_VALUE;
+
+    private static final Map<String, Float> FIELD_WEIGHTS = Map.of(
+            TITLE, 3f,
+            CAPTION, 2f,
+            LOCATION, 1.5f,
+            COMMENTS, 1f);
+
+    // сортировка выдачи: релевантность, при равенстве более новый пост
+    private static final Sort RELEVANCE = new Sort(SortField.FIELD_SCORE, new SortField(SORT_ID, SortField.Type.LONG, true));
+
+    private static final int BATCH_SIZE = 500;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Path indexDir;
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final BlockingQueue<Long> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "post-search-indexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private FSDirectory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private volatile boolean running = true;
+    // поколение, которым помечаются записываемые документы; меняется только под монитором
+    private long generation;
+
+    public PostSearchIndex(JdbcTemplate jdbcTemplate, @Value("${app.search.index-dir:data/search-index}") String indexDir) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.indexDir = Path.of(indexDir);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        directory = FSDirectory.open(indexDir);
+        writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        searcherManager = new SearcherManager(writer, null);
+        String rebuilt = rebuiltGeneration();
+        generation = rebuilt == null ? 0 : Long.parseLong(rebuilt);
+        indexer.submit(this::drainQueue);
+    }
+
+    // Индекс без отметки о пересборке (первый запуск, удаленный каталог, прерванная сборка) собирается из БД в фоне
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfIncomplete() {
+        if (rebuiltGeneration() == null) {
+            CompletableFuture.runAsync(this::rebuild);
+        }
+    }
+
+    /**
+     * Изменение поста или его комментариев: документ будет перечитан из БД после коммита.
+     */
+    public void enqueue(Long postId) {
+        AfterCommit.run(() -> queue.add(postId));
+    }
+
+    /**
+     * Полная пересборка индекса из БД. Пока она идет, поиск видит старые документы вместе с уже перезаписанными.
+     */
+    public synchronized void rebuild() {
+        try {
+            generation = Math.max(generation + 1, System.currentTimeMillis());
+            List<Long> ids = new ArrayList<>(BATCH_SIZE);
+            long[] total = {0};
+            jdbcTemplate.query("SELECT id FROM post ORDER BY id", rs -> {
+                if (!running) {
+                    throw new IllegalStateException("shutting down");
+                }
+                ids.add(rs.getLong(1));
+                if (ids.size() == BATCH_SIZE) {
+                    try {
+                        total[0] += index(ids);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    ids.clear();
+                }
+            });
+            total[0] += index(ids);
+            // все существующие посты перезаписаны текущим поколением, остальное - удаленные посты
+            writer.deleteDocuments(new BooleanQuery.Builder()
+                    .add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST)
+                    .add(LongPoint.newExactQuery(GENERATION, generation), BooleanClause.Occur.MUST_NOT)
+                    .build());
+            writer.setLiveCommitData(Map.of(REBUILT, Long.toString(generation)).entrySet());
+            writer.commit();
+            searcherManager.maybeRefresh();
+            log.info("Post search: rebuilt index with {} posts", total[0]);
+        } catch (IOException | RuntimeException e) {
+            // старые документы не удалены, индекс остается рабочим; без отметки пересборка повторится при старте
+            log.error("Post search: rebuild failed", e);
+        }
+    }
+
+    /**
+     * Страница результатов: id постов по убыванию релевантности и курсор следующей страницы.
+     */
+    public SearchPage search(String text, SearchCursor cursor, int size) {
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, FIELD_WEIGHTS);
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        Query query = parser.parse(text);
+        if (query == null) {
+            return new SearchPage(List.of(), null);
+        }
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                // sort_id уникален, номер документа в курсоре не нужен: берем последний, чтобы сам пост не повторился
+                FieldDoc after = cursor == null ? null
+                        : new FieldDoc(searcher.getIndexReader().maxDoc() - 1, cursor.score(),
+                        new Object[]{cursor.score(), cursor.id()});
+                TopDocs top = searcher.searchAfter(after, query, size + 1, RELEVANCE, true);
+                List<Long> ids = new ArrayList<>(size);
+                SearchCursor next = null;
+                for (int i = 0; i < top.scoreDocs.length && i < size; i++) {
+                    FieldDoc hit = (FieldDoc) top.scoreDocs[i];
+                    long id = (Long) hit.fields[1];
+                    ids.add(id);
+                    next = new SearchCursor(hit.score, id);
+                }
+                return new SearchPage(ids, top.scoreDocs.length > size ? next : null);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.refresh-interval-ms:1000}")
+    public void refresh() throws IOException {
+        searcherManager.maybeRefresh();
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.commit-interval-ms:60000}")
+    public void commit() throws IOException {
+        if (writer.hasUncommittedChanges()) {
+            writer.commit();
+        }
+    }
+
+    // Поток индексации не прерывается: interrupt внутри IndexWriter закрывает его.
+    // Поток дорабатывает взятую пачку и выходит по STOP, пересборка прекращается по running
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        running = false;
+        queue.add(STOP);
+        indexer.shutdown();
+        if (!indexer.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            log.warn("Post search: indexer did not stop in {} s", SHUTDOWN_TIMEOUT_SECONDS);
+        }
+        synchronized (this) {
+            searcherManager.close();
+            writer.close();
+            directory.close();
+        }
+    }
+
+    private void drainQueue() {
+        List<Long> batch = new ArrayList<>(BATCH_SIZE);
+        boolean stop = false;
+        while (!stop) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                stop = batch.remove((Long) STOP);
+                index(new ArrayList<>(new LinkedHashSet<>(batch)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // пост переиндексируется при следующем изменении или пересборке
+                log.error("Post search: failed to index posts {}", batch, e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Перечитывает посты из БД: найденные заменяются, удаленные убираются из индекса
+    private synchronized int index(List<Long> postIds) throws IOException {
+        if (postIds.isEmpty()) {
+            return 0;
+        }
+        String in = String.join(",", Collections.nCopies(postIds.size(), "?"));
+        Map<Long, Document> documents = new HashMap<>();
+        jdbcTemplate.query("SELECT id, title, caption, location FROM post WHERE id IN (" + in + ")", rs -> {
+            long id = rs.getLong(1);
+            Document doc = new Document();
+            doc.add(new StringField(ID, Long.toString(id), Field.Store.NO));
+            doc.add(new NumericDocValuesField(SORT_ID, id));
+            doc.add(new LongPoint(GENERATION, generation));
+            addText(doc, TITLE, rs.getString(2));
+            addText(doc, CAPTION, rs.getString(3));
+            addText(doc, LOCATION, rs.getString(4));
+            documents.put(id, doc);
+        }, postIds.toArray());
+        if (!documents.isEmpty()) {
+            jdbcTemplate.query("SELECT post_id, message FROM comment WHERE post_id IN (" + in + ")", rs -> {
+                Document doc = documents.get(rs.getLong(1));
+                if (doc != null) {
+                    addText(doc, COMMENTS, rs.getString(2));
+                }
+            }, postIds.toArray());
+        }
+        for (Long id : postIds) {
+            Term term = new Term(ID, id.toString());
+            Document doc = documents.get(id);
+            if (doc == null) {
+                writer.deleteDocuments(term);
+            } else {
+                writer.updateDocument(term, doc);
+            }
+        }
+        return documents.size();
+    }
+
+    private String rebuiltGeneration() {
+        for (Map.Entry<String, String> entry : writer.getLiveCommitData()) {
+            if (REBUILT.equals(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static void addText(Document doc, String field, String value) {
+        if (value != null && !value.isBlank()) {
+            doc.add(new TextField(field, value, Field.Store.NO));
+        }
+    }
+
+    public record SearchPage(List<Long> postIds, SearchCursor nextCursor) {
+    }
+}
@@ -2,16 +2,23 @@ package com.example.instaKing.services;
 
 import com.example.instaKing.dto.PostDTO;
 import com.example.instaKing.exceptions.PostNotFoundException;
+import com.example.instaKing.facade.PostFragmentCache;
 import com.example.instaKing.models.ImageModel;
 import com.example.instaKing.models.Post;
+import com.example.instaKing.models.PostLike;
 import com.example.instaKing.models.User;
 import com.example.instaKing.models.enums.NotificationType;
+import com.example.instaKing.payload.request.PageCursor;
+import com.example.instaKing.payload.request.SearchCursor;
 import com.example.instaKing.repositories.ImageRepository;
+import com.example.instaKing.repositories.PostLikeRepository;
 import com.example.instaKing.repositories.PostRepository;
 import com.example.instaKing.repositories.UserRepository;
+import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -21,20 +28,38 @@ import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.security.Principal;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class PostService {
     private final UserRepository userRepository;
     private final PostRepository postRepository;
+    private final PostLikeRepository postLikeRepository;
     private final ImageRepository imageRepository;
     private final ImageService imageService;
     private final NotificationService notificationService;
+    private final TimelineService timelineService;
+    private final PostCounterAggregator postCounterAggregator;
+    private final TrendingService trendingService;
+    private final PostFragmentCache postFragmentCache;
+    private final UserStatsService userStatsService;
+    private final PostSearchIndex postSearchIndex;
+    private final UserCache userCache;
+    private final EntityManager entityManager;
 
 
+    @Transactional
     public Post createPost(PostDTO postDTO, Principal principal) {
         User user = getUserByPrincipal(principal);
         Post post = new Post();
@@ -43,7 +68,17 @@ public class PostService {
         post.setLocation(postDTO.getLocation());
         post.setTitle(postDTO.getTitle());
         post.setLikes(0);
-        return postRepository.save(post);
+        Post saved = postRepository.save(post);
+        userStatsService.onPostCreated(user.getId());
+        postSearchIndex.enqueue(saved.getId());
+        timelineService.fanOut(saved);
+        trendingService.onPostCreated(saved);
+        return saved;
+    }
+
+    public TimelineService.FeedSlice getFeed(Principal principal, Long cursor, int size) {
+        User user = getUserByPrincipal(principal);
+        return timelineService.getFeed(user.getId(), cursor, size);
     }
 
     public Page<Post> getPosts(int page, int size) {
@@ -51,6 +86,64 @@ public class PostService {
         return postRepository.findAll(pageable);
     }
 
+    public List<Post> getPostsBefore(PageCursor cursor, int size) {
+        Limit limit = Limit.of(size + 1);
+        if (cursor == null) {
+            return postRepository.findLatest(limit);
+        }
+        return postRepository.findLatestBefore(cursor.createdAt(), cursor.id(), limit);
+    }
+
+    public List<Post> getTrendingPosts(int page, int size) {
+        return findAllByIdsOrdered(trendingService.getTopPostIds(page, size));
+    }
+
+    public PostSearchIndex.SearchPage searchPosts(String query, SearchCursor cursor, int size) {
+        if (query == null || query.isBlank()) {
+            return new PostSearchIndex.SearchPage(List.of(), null);
+        }
+        return postSearchIndex.search(query, cursor, size);
+    }
+
+    // посты в порядке ids, удаленные пропускаются
+    public List<Post> findAllByIdsOrdered(List<Long> ids) {
+        Map<Long, Post> postsById = postRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Post::getId, Function.identity()));
+        return ids.stream()
+                .map(postsById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Проходит по постам курсором БД и отдает их пачками по chunkSize (userId = null - все посты).
+     * После каждой пачки контекст очищается, и выгруженные посты вместе с подгруженными
+     * для них комментариями не копятся в памяти.
+     */
+    @Transactional
+    public void streamPosts(Long userId, int chunkSize, Consumer<List<Post>> consumer) {
+        try (Stream<Post> posts = userId == null ? postRepository.streamAll() : postRepository.streamByUserId(userId)) {
+            List<Post> chunk = new ArrayList<>(chunkSize);
+            Iterator<Post> iterator = posts.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == chunkSize || !iterator.hasNext()) {
+                    consumer.accept(chunk);
+                    entityManager.clear();
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        }
+    }
+
+    public List<PostLike> getLikersBefore(Long postId, PageCursor cursor, int size) {
+        Limit limit = Limit.of(size + 1);
+        if (cursor == null) {
+            return postLikeRepository.findLatestByPostId(postId, limit);
+        }
+        return postLikeRepository.findLatestByPostIdBefore(postId, cursor.createdAt(), cursor.id(), limit);
+    }
+
     public List<Post> getAllPosts() {
         return postRepository.findByOrderByCreatedAtDesc();
     }
@@ -59,7 +152,7 @@ public class PostService {
         User user = getUserByPrincipal(principal);
 
         return postRepository.findByIdAndUser(postId, user)
-                .orElseThrow(() -> new PostNotFoundException("PostService not found for username" + user.getUsername()));
+                .orElseThrow(() -> new PostNotFoundException("PostService not found for username" + principal.getName()));
     }
 
     public List<Post> getAllPostsForCurrentUser(Principal principal) {
@@ -67,30 +160,30 @@ public class PostService {
         return postRepository.findByUserOrderByCreatedAtDesc(user);
     }
 
+    @Transactional
     public Post likePost(Long postId, String username) {
         Post post = postRepository.findById(postId).
                 orElseThrow(() -> new PostNotFoundException("PostService cannot be found"));
-        Optional<String> userLiked = post.getLikedUser()
-                .stream()
-                .filter(u -> u.equals(username)).findAny();
-        if (userLiked.isPresent()) {
-            post.setLikes(post.getLikes() - 1);
-            post.getLikedUser().remove(username);
-        } else {
-            post.setLikes(post.getLikes() + 1);
-            post.getLikedUser().add(username);
-            User liker=userRepository.findByUsername(username).orElseThrow(() -> new UsernameNotFoundException("Username not found"));
-
+        User liker = userCache.findByUsername(username)
+                .map(summary -> userRepository.getReferenceById(summary.id()))
+                .orElseThrow(() -> new UsernameNotFoundException("Username not found"));
+
+        if (postLikeRepository.deleteByPostIdAndUserId(postId, liker.getId()) > 0) {
+            postCounterAggregator.add(PostCounterAggregator.Counter.LIKES, postId, -1);
+            postFragmentCache.invalidate(postId);
+        } else if (postLikeRepository.insertIfAbsent(postId, liker.getId()) > 0) {
             notificationService.createNotification(
                     post.getUser(),
                     liker,
                     NotificationType.FAVORITE,
                     "Понравилась ваша публикация: "+ post.getTitle()
             );
+            postCounterAggregator.add(PostCounterAggregator.Counter.LIKES, postId, 1);
+            trendingService.onLike(post);
+            postFragmentCache.invalidate(postId);
         }
-        return postRepository.save(post);
-
-
+        // счетчик запишется в post при следующем сбросе, PostFacade прибавляет ожидающую часть
+        return post;
     }
     @Transactional
     public void deletePost(Long postId, Principal principal) {
@@ -101,19 +194,28 @@ public class PostService {
             throw new RuntimeException(e);
         }
         Optional<ImageModel> imageModel = imageRepository.findByPostId(post.getId());
+        postLikeRepository.deleteAllByPostId(postId);
         postRepository.delete(post);
+        userStatsService.onPostDeleted(post.getUser().getId());
+        postSearchIndex.enqueue(postId);
+        timelineService.removePost(postId, post.getUser().getId());
+        trendingService.removePost(postId);
+        postFragmentCache.invalidate(postId);
 
         imageModel.ifPresent(imageRepository::delete);
     }
 
     private User getUserByPrincipal(Principal principal) {
         String username = principal.getName();
-        return userRepository.findByUsername(username)
+        return userCache.findByUsername(username)
+                .map(summary -> userRepository.getReferenceById(summary.id()))
                 .orElseThrow(() -> new UsernameNotFoundException("username not found with username" + username));
     }
 
     public List<Post> getAllPostsForUser(String username) {
-        User user=userRepository.findByUsername(username).orElseThrow(() -> new UsernameNotFoundException("username not found with username" + username));
+        User user = userCache.findByUsername(username)
+                .map(summary -> userRepository.getReferenceById(summary.id()))
+                .orElseThrow(() -> new UsernameNotFoundException("username not found with username" + username));
         return postRepository.findByUserOrderByCreatedAtDesc(user);
     }
 
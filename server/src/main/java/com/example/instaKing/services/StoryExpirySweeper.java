@@ -0,0 +1,171 @@
+package com.example.instaKing.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.instaKing.security.SecurityConstants.UPLOAD_DIR_FOR_STORIES;
+
+/**
+ * Уборка истекших историй. Истории выбираются по индексу expires_at пачками по app.stories.expiry-batch-size:
+ * строка переносится в story_archive, просмотры и сама история удаляются, медиафайлы стираются после коммита.
+ * Каждая пачка - своя транзакция под pg_try_advisory_xact_lock, поэтому на нескольких инстансах
+ * пачку забирает один, остальные пропускают тик.
+ * Метрики: stories.expiry.backlog, stories.expiry.sweep, stories.expiry.archived.
+ */
+@Slf4j
+@Component
+public class StoryExpirySweeper {
+
+    // ключ advisory lock уборщика историй
+    private static final long LOCK_KEY = 0x53_54_4F_52_59_45_58_50L;
+
+    private static final String TRY_LOCK = "SELECT pg_try_advisory_xact_lock(?)";
+    private static final String SELECT_EXPIRED = "SELECT id, user_id, media_url FROM story " +
+            "WHERE expires_at <= ? ORDER BY expires_at LIMIT ? FOR UPDATE";
+    private static final String ARCHIVE = "INSERT INTO story_archive " +
+            "(id, user_id, media_url, description, visibility, views, created_at, expires_at, archived_at) " +
+            "SELECT id, user_id, media_url, description, visibility, views, created_at, expires_at, ? " +
+            "FROM story WHERE id IN (%s) ON CONFLICT (id) DO NOTHING";
+    private static final String DELETE_VIEWS = "DELETE FROM story_view WHERE story_id IN (%s)";
+    private static final String DELETE_STORIES = "DELETE FROM story WHERE id IN (%s)";
+    private static final String DECREMENT_STORIES = "UPDATE user_stats SET stories = stories - ? WHERE user_id = ?";
+    private static final String COUNT_EXPIRED = "SELECT count(*) FROM story WHERE expires_at <= ?";
+    private static final String NEXT_EXPIRY = "SELECT min(expires_at) FROM story";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StoryViewRecorder storyViewRecorder;
+    private final int batchSize;
+    private final Timer sweepTimer;
+    private final Counter archivedCounter;
+    private final AtomicLong backlog = new AtomicLong();
+
+    // Самая ранняя expires_at после прошлой уборки: до нее тики ничего не делают.
+    // Новая история истекает через сутки, то есть не раньше этого времени
+    private volatile LocalDateTime nextExpiry = LocalDateTime.MIN;
+
+    public StoryExpirySweeper(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              StoryViewRecorder storyViewRecorder,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.stories.expiry-batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.storyViewRecorder = storyViewRecorder;
+        this.batchSize = batchSize;
+        this.sweepTimer = Timer.builder("stories.expiry.sweep")
+                .description("Story expiry sweep duration")
+                .register(meterRegistry);
+        this.archivedCounter = Counter.builder("stories.expiry.archived")
+                .description("Expired stories moved to story_archive")
+                .register(meterRegistry);
+        Gauge.builder("stories.expiry.backlog", backlog, AtomicLong::get)
+                .description("Expired stories not archived yet")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.stories.expiry-interval-ms:60000}",
+            initialDelayString = "${app.stories.expiry-interval-ms:60000}")
+    public synchronized void sweep() {
+        LocalDateTime now = LocalDateTime.now();
+        if (now.isBefore(nextExpiry)) {
+            return;
+        }
+        sweepTimer.record(() -> {
+            try {
+                int archived = 0;
+                int swept;
+                do {
+                    swept = sweepBatch(now);
+                    archived += Math.max(swept, 0);
+                } while (swept == batchSize);
+                if (archived > 0) {
+                    log.info("Story expiry: archived {} stories", archived);
+                }
+                // другой инстанс держит блокировку - он и доберет остаток
+                Long remaining = jdbcTemplate.queryForObject(COUNT_EXPIRED, Long.class, Timestamp.valueOf(now));
+                backlog.set(remaining == null ? 0 : remaining);
+                Timestamp next = jdbcTemplate.queryForObject(NEXT_EXPIRY, Timestamp.class);
+                nextExpiry = next == null ? now : next.toLocalDateTime();
+            } catch (RuntimeException e) {
+                log.error("Story expiry sweep failed: {}", e.getMessage());
+            }
+        });
+    }
+
+    // Одна пачка; -1 если блокировку держит другой инстанс
+    private int sweepBatch(LocalDateTime now) {
+        List<ExpiredStory> expired = new ArrayList<>(batchSize);
+        Integer swept = transactionTemplate.execute(status -> {
+            Boolean locked = jdbcTemplate.queryForObject(TRY_LOCK, Boolean.class, LOCK_KEY);
+            if (!Boolean.TRUE.equals(locked)) {
+                return -1;
+            }
+            jdbcTemplate.query(SELECT_EXPIRED, rs -> {
+                expired.add(new ExpiredStory(rs.getLong(1), rs.getLong(2), rs.getString(3)));
+            }, Timestamp.valueOf(now), batchSize);
+            if (expired.isEmpty()) {
+                return 0;
+            }
+            Object[] ids = expired.stream().map(ExpiredStory::id).toArray();
+            String in = String.join(",", Collections.nCopies(ids.length, "?"));
+            Object[] archiveArgs = new Object[ids.length + 1];
+            archiveArgs[0] = Timestamp.valueOf(now);
+            System.arraycopy(ids, 0, archiveArgs, 1, ids.length);
+            jdbcTemplate.update(String.format(ARCHIVE, in), archiveArgs);
+            jdbcTemplate.update(String.format(DELETE_VIEWS, in), ids);
+            jdbcTemplate.update(String.format(DELETE_STORIES, in), ids);
+
+            Map<Long, Integer> perUser = new HashMap<>();
+            expired.forEach(story -> perUser.merge(story.userId(), 1, Integer::sum));
+            jdbcTemplate.batchUpdate(DECREMENT_STORIES, perUser.entrySet().stream()
+                    .map(e -> new Object[]{e.getValue(), e.getKey()})
+                    .toList());
+            return expired.size();
+        });
+        if (swept == null || swept <= 0) {
+            return swept == null ? 0 : swept;
+        }
+        archivedCounter.increment(swept);
+        // строки уже удалены: файл без строки не страшен, строка без файла - битая история
+        for (ExpiredStory story : expired) {
+            storyViewRecorder.onStoryDeleted(story.id());
+            deleteMedia(story.mediaUrl());
+        }
+        return swept;
+    }
+
+    private static void deleteMedia(String mediaUrl) {
+        if (mediaUrl == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(Paths.get(UPLOAD_DIR_FOR_STORIES + mediaUrl));
+        } catch (IOException e) {
+            log.warn("Story expiry: failed to delete media {}: {}", mediaUrl, e.getMessage());
+        }
+    }
+
+    private record ExpiredStory(Long id, Long userId, String mediaUrl) {
+    }
+}
@@ -1,10 +1,10 @@
 package com.example.instaKing.services;
 
 import com.example.instaKing.dto.StoryDTO;
+import com.example.instaKing.dto.StoryTrayDTO;
 import com.example.instaKing.dto.StoryViewDTO;
 import com.example.instaKing.facade.Facade;
 import com.example.instaKing.models.Story;
-import com.example.instaKing.models.StoryView;
 import com.example.instaKing.models.User;
 import com.example.instaKing.models.enums.StoryVisibility;
 import com.example.instaKing.repositories.StoryRepository;
@@ -13,14 +13,18 @@ import com.example.instaKing.repositories.UserRepository;
 import com.example.instaKing.security.SecurityConstants;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -34,55 +38,101 @@ import static com.example.instaKing.security.SecurityConstants.UPLOAD_DIR_FOR_ST
 @Slf4j
 @Service
 public class StoryService {
+    private static final int MAX_BATCH = 500;
+
     private final StoryRepository storyRepository;
     private final UserRepository userRepository;
     private final StoryViewRepository storyViewRepository;
     private final Facade facade;
-
-    public StoryService(StoryRepository storyRepository, UserRepository userRepository, StoryViewRepository storyViewRepository, Facade facade) {
+    private final FollowGraphIndex followGraphIndex;
+    private final UserStatsService userStatsService;
+    private final UserCache userCache;
+    private final StoryViewRecorder storyViewRecorder;
+    private final ActiveStoryIndex activeStoryIndex;
+    private final DataSize maxUploadSize;
+    private final TransactionTemplate transactionTemplate;
+
+    public StoryService(StoryRepository storyRepository, UserRepository userRepository, StoryViewRepository storyViewRepository, Facade facade, FollowGraphIndex followGraphIndex, UserStatsService userStatsService, UserCache userCache, StoryViewRecorder storyViewRecorder, ActiveStoryIndex activeStoryIndex, TransactionTemplate transactionTemplate,
+                        @Value("${app.stories.max-upload-size:100MB}") DataSize maxUploadSize) {
         this.storyRepository = storyRepository;
         this.userRepository = userRepository;
         this.storyViewRepository = storyViewRepository;
         this.facade = facade;
+        this.followGraphIndex = followGraphIndex;
+        this.userStatsService = userStatsService;
+        this.userCache = userCache;
+        this.storyViewRecorder = storyViewRecorder;
+        this.activeStoryIndex = activeStoryIndex;
+        this.maxUploadSize = maxUploadSize;
+        this.transactionTemplate = transactionTemplate;
     }
 
+    /**
+     * Файл сохраняется до транзакции: копирование большого видео не держит соединение с БД.
+     * Если история не сохранилась, файл удаляется.
+     */
     public Story createStory(StoryDTO storyDTO, Principal principal) throws IOException {
-        String mediaUrl = uploadContent(storyDTO.getFile());
-        User user = getUserByPrincipal(principal);
-        Story story = new Story();
-        story.setUser(user);
-        story.setViews(0);
-        story.setMediaUrl(mediaUrl);
-        story.setDescription(storyDTO.getDescription());
-        story.setVisibility(storyDTO.getVisibility());
-
-        return storyRepository.save(story);
+        Path media = uploadContent(storyDTO.getFile());
+        try {
+            return transactionTemplate.execute(status -> {
+                User user = getUserByPrincipal(principal);
+                Story story = new Story();
+                story.setUser(user);
+                story.setViews(0);
+                story.setMediaUrl(media.getFileName().toString());
+                story.setDescription(storyDTO.getDescription());
+                story.setVisibility(storyDTO.getVisibility());
+
+                Story saved = storyRepository.save(story);
+                userStatsService.onStoryCreated(user.getId());
+                activeStoryIndex.onStoryCreated(saved);
+                return saved;
+            });
+        } catch (RuntimeException e) {
+            deleteMedia(media);
+            throw e;
+        }
     }
 
-    private String uploadContent(MultipartFile file) throws IOException {
-        String contentType = file.getContentType();
-        if (contentType == null ||
-                !(contentType.startsWith("image/") || contentType.startsWith("video/"))) {
-            throw new IllegalArgumentException("Недопустимый тип файла. Разрешены только изображения и видео.");
+    /**
+     * Тип определяется по сигнатуре файла. Часть multipart больше file-size-threshold уже лежит
+     * во временном файле, transferTo переносит или копирует ее в uploads/stories потоком, без чтения в память.
+     */
+    private Path uploadContent(MultipartFile file) throws IOException {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("Файл пустой.");
         }
-        if (file.getSize() > 500 * 1024 * 1024) {
+        if (file.getSize() > maxUploadSize.toBytes()) {
             throw new IllegalArgumentException("Файл слишком большой.");
         }
+        String extension;
+        try (InputStream in = file.getInputStream()) {
+            extension = MediaSniffer.detect(in.readNBytes(MediaSniffer.HEADER_SIZE))
+                    .orElseThrow(() -> new IllegalArgumentException(
+                            "Недопустимый тип файла. Разрешены только изображения и видео."));
+        }
 
-
-        String fileName = UUID.randomUUID() + "_" + file.getOriginalFilename();
-        Path filePath = Paths.get(SecurityConstants.UPLOAD_DIR_FOR_STORIES + fileName);
+        String fileName = UUID.randomUUID() + "." + extension;
+        Path filePath = Paths.get(SecurityConstants.UPLOAD_DIR_FOR_STORIES).resolve(fileName).toAbsolutePath();
 
         Files.createDirectories(filePath.getParent());
-        Files.write(filePath, file.getBytes());
+        file.transferTo(filePath);
+        return filePath;
+    }
 
-        return fileName;
+    private static void deleteMedia(Path filePath) {
+        try {
+            Files.deleteIfExists(filePath);
+        } catch (IOException e) {
+            log.warn("Failed to delete story media {}: {}", filePath, e.getMessage());
+        }
     }
 
     public List<StoryDTO> getStoriesForUser(String username, Principal principal) {
         User currentUser = getUserByPrincipal(principal);
 
-        User targetUser = userRepository.findByUsername(username)
+        User targetUser = userCache.findByUsername(username)
+                .map(summary -> userRepository.getReferenceById(summary.id()))
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
 
         List<Story> stories = storyRepository.getStoriesByUser(targetUser);
@@ -95,136 +145,146 @@ public class StoryService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Активные истории автора из ActiveStoryIndex. Чужие истории фильтруются по видимости,
+     * список зрителей (из story_view) получает только владелец.
+     */
     public List<StoryDTO> getActiveStoriesForUser(String username, Principal principal) {
-        User currentUser = getUserByPrincipal(principal);
-        User user = userRepository.findByUsername(username)
+        UserCache.UserSummary viewer = getSummaryByPrincipal(principal);
+        UserCache.UserSummary owner = userCache.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
 
-        List<Story> stories = storyRepository.getActiveStoryByUser(user, LocalDateTime.now());
-        if (currentUser==user){
+        List<ActiveStoryIndex.ActiveStory> stories = activeStoryIndex.getActiveStories(owner.id());
+        if (owner.id() == viewer.id()) {
+            Map<Long, Map<String, LocalDateTime>> viewers = getViewers(stories);
             return stories.stream()
-                    .map(s->facade.storyToStoryDTO(s,currentUser))
+                    .map(story -> facade.activeStoryToDTO(story, owner, viewer.id(),
+                            viewers.getOrDefault(story.id(), Map.of())))
                     .collect(Collectors.toList());
         }
-        List<Story> visibleStories = stories.stream()
-                .filter(story -> {
-                    StoryVisibility visibility = story.getVisibility();
-
-                    if (visibility == null) {
-                        return true;
-                    }
-
-                    switch (visibility) {
-                        case PUBLIC:
-                            return true;
-
-                        case FOLLOWERS_ONLY:
-                            return user.getFollowers().contains(currentUser);
-
-                        case FRIENDS:
-                            return user.getFollowers().contains(currentUser)
-                                    && user.getFollowing().contains(currentUser);
-
-                        default:
-                            return false;
-                    }
-                })
-                .collect(Collectors.toList());
-
-        return visibleStories.stream()
-                .map(story -> facade.storyToStoryDTO(story, currentUser))
+        return stories.stream()
+                .filter(story -> isVisible(story.visibility(), owner.id(), viewer.id()))
+                .map(story -> facade.activeStoryToDTO(story, owner, viewer.id(), Map.of()))
                 .collect(Collectors.toList());
     }
 
     public boolean hasActiveStory(String username) {
-        User user=userRepository.findByUsername(username).orElse(null);
-        List<Story> stories=storyRepository.getActiveStoryByUser(user,LocalDateTime.now());
-        return !stories.isEmpty();
+        return userCache.findByUsername(username)
+                .map(summary -> activeStoryIndex.hasActiveStories(summary.id()))
+                .orElse(false);
     }
 
-    public Map<String, Boolean> getUsersStories(Principal principal) {
-        User currentUser = getUserByPrincipal(principal);
-        List<User> followings = List.copyOf(currentUser.getSubscribedBy());
-        if (followings.isEmpty()) {
-            return Map.of();
+    /**
+     * Есть ли активные истории у пачки пользователей (аватарки на экране). Неизвестные username получают false.
+     */
+    public Map<String, Boolean> hasActiveStories(List<String> usernames) {
+        if (usernames.size() > MAX_BATCH) {
+            throw new IllegalArgumentException("No more than " + MAX_BATCH + " usernames per request");
         }
-
-        List<Story> stories = storyRepository.getActiveStoriesByUsers(followings, LocalDateTime.now());
-
-        List<Story> visibleStories = stories.stream()
-                .filter(story -> {
-                    User owner = story.getUser();
-                    StoryVisibility visibility = story.getVisibility();
-
-                    if (visibility == StoryVisibility.PUBLIC) {
-                        return true;
-                    } else if (visibility == StoryVisibility.FOLLOWERS_ONLY) {
-                        return owner.getSubscribedBy().contains(currentUser);
-                    } else if (visibility == StoryVisibility.FRIENDS) {
-                        return owner.getSubscribedBy().contains(currentUser)
-                                && owner.getSubscribedTo().contains(currentUser);
-                    }
-                    return false;
-                })
-                .toList();
-
-        Map<User, List<Story>> storiesByUser = visibleStories.stream()
-                .collect(Collectors.groupingBy(Story::getUser));
-
-        return storiesByUser.entrySet().stream()
-                .collect(Collectors.toMap(
-                        entry -> entry.getKey().getUsername(),
-                        entry -> entry.getValue().stream().allMatch(story ->
-                                story.getViewsDetails().stream()
-                                        .anyMatch(view -> view.getUser().getUsername().equals(currentUser.getUsername()))
-                        )
-                ));
+        Map<String, UserCache.UserSummary> owners = userCache.findAllByUsername(
+                usernames.stream().filter(Objects::nonNull).collect(Collectors.toSet()));
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        for (String username : usernames) {
+            UserCache.UserSummary owner = owners.get(username);
+            result.put(username, owner != null && activeStoryIndex.hasActiveStories(owner.id()));
+        }
+        return result;
     }
 
-    private boolean isStoryVisibleToUser(Story story, User viewer) {
-        User owner = story.getUser();
+    /**
+     * Лента историй подписок по ActiveStoryIndex. Видимость считается по FollowGraphIndex:
+     * FOLLOWERS_ONLY и FRIENDS видны, если автор подписан на зрителя (на автора зритель уже подписан).
+     * Непросмотренные определяются по множествам зрителей StoryViewRecorder.
+     * Сначала авторы с непросмотренными историями, затем по времени последней истории.
+     */
+    public List<StoryTrayDTO> getStoryTray(Long viewerId) {
+        Map<Long, List<ActiveStoryIndex.ActiveStory>> visibleByOwner = new LinkedHashMap<>();
+        List<Long> storyIds = new ArrayList<>();
+        for (long ownerId : followGraphIndex.getSubscriptions(viewerId)) {
+            List<ActiveStoryIndex.ActiveStory> visible = activeStoryIndex.getActiveStories(ownerId).stream()
+                    .filter(story -> isVisible(story.visibility(), ownerId, viewerId))
+                    .toList();
+            if (!visible.isEmpty()) {
+                visibleByOwner.put(ownerId, visible);
+                visible.forEach(story -> storyIds.add(story.id()));
+            }
+        }
+        if (visibleByOwner.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // просмотры всех историй ленты - одним запросом (или из кэша множеств)
+        Set<Long> viewed = storyViewRecorder.viewedAmong(storyIds, viewerId);
+        Map<Long, UserCache.UserSummary> owners = userCache.findAllById(visibleByOwner.keySet());
+
+        List<StoryTrayDTO> tray = new ArrayList<>();
+        visibleByOwner.forEach((ownerId, visible) -> {
+            UserCache.UserSummary owner = owners.get(ownerId);
+            if (owner != null) {
+                tray.add(facade.storyTrayToDTO(owner,
+                        visible.stream().anyMatch(story -> !viewed.contains(story.id())),
+                        visible.get(visible.size() - 1).createdAt()));
+            }
+        });
+        tray.sort(Comparator.comparing(StoryTrayDTO::isHasUnseen).reversed()
+                .thenComparing(StoryTrayDTO::getLatestStoryAt, Comparator.reverseOrder()));
+        return tray;
+    }
 
-        return switch (story.getVisibility()) {
+    // FOLLOWERS_ONLY: владелец подписан на зрителя, FRIENDS: к тому же зритель подписан на владельца
+    private boolean isVisible(StoryVisibility visibility, long ownerId, long viewerId) {
+        if (visibility == null) {
+            return true;
+        }
+        return switch (visibility) {
             case PUBLIC -> true;
-            case FOLLOWERS_ONLY -> owner.getSubscribedBy().contains(viewer);
-            case FRIENDS -> owner.getCloseFriends().contains(viewer);
+            case FOLLOWERS_ONLY -> followGraphIndex.isSubscribed(ownerId, viewerId);
+            case FRIENDS -> followGraphIndex.isSubscribed(ownerId, viewerId)
+                    && followGraphIndex.isSubscribed(viewerId, ownerId);
         };
     }
 
 
 
 
+    private UserCache.UserSummary getSummaryByPrincipal(Principal principal) {
+        String username = principal.getName();
+        return userCache.findByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("username not found with username" + username));
+    }
+
+    // зрители историй владельца: story id -> username -> время просмотра
+    private Map<Long, Map<String, LocalDateTime>> getViewers(List<ActiveStoryIndex.ActiveStory> stories) {
+        if (stories.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Map<String, LocalDateTime>> viewers = new HashMap<>();
+        storyViewRepository.findViewers(stories.stream().map(ActiveStoryIndex.ActiveStory::id).toList())
+                .forEach(view -> viewers.computeIfAbsent(view.getStoryId(), id -> new HashMap<>())
+                        .put(view.getUsername(), view.getViewedAt()));
+        return viewers;
+    }
+
     private User getUserByPrincipal(Principal principal) {
         String username = principal.getName();
-        return userRepository.findByUsername(username)
+        return userCache.findByUsername(username)
+                .map(summary -> userRepository.getReferenceById(summary.id()))
                 .orElseThrow(() -> new UsernameNotFoundException("username not found with username" + username));
     }
 
 
-    @Transactional
+    // Повтор отсекается по множеству зрителей в памяти, запись в story_view уходит пачкой
     public void addView(Long storyId, Principal principal) {
-        Story story = storyRepository.findById(storyId)
-                .orElseThrow(() -> new RuntimeException("Story not found"));
-        User user = getUserByPrincipal(principal);
-        boolean alreadyViewed = story.getViewsDetails().stream()
-                .anyMatch(v -> v.getUser().getId().equals(user.getId()));
-
-        if (!alreadyViewed) {
-            StoryView view = new StoryView();
-            view.setStory(story);
-            view.setUser(user);
-            story.getViewsDetails().add(view);
-            story.setViews(story.getViewsDetails().size());
-            storyRepository.save(story);
-
+        UserCache.UserSummary viewer = getSummaryByPrincipal(principal);
+        if (storyViewRecorder.record(storyId, viewer.id()).isEmpty()) {
+            throw new RuntimeException("Story not found");
         }
     }
 
     public List<StoryViewDTO> getViews(Long storyId, Principal principal) {
-        User user=getUserByPrincipal(principal);
+        UserCache.UserSummary user = getSummaryByPrincipal(principal);
         Story story=storyRepository.findById(storyId)
                 .orElseThrow(() -> new RuntimeException("Story not found"));
-        if (!story.getUser().getUsername().equals(user.getUsername())) {
+        if (story.getUser().getId() != user.id()) {
             throw new UsernameNotFoundException("story closed for you username");
         }
         else {
@@ -238,27 +298,33 @@ public class StoryService {
         }
     }
 
+    @Transactional
     public void deleteStory(Long storyId, Principal principal) throws IOException {
-        User user=getUserByPrincipal(principal);
+        UserCache.UserSummary user = getSummaryByPrincipal(principal);
         Story story=storyRepository.findById(storyId)
                 .orElseThrow(() -> new RuntimeException("Story not found"));
-        if (!story.getUser().getUsername().equals(user.getUsername())) {
+        if (story.getUser().getId() != user.id()) {
             throw new UsernameNotFoundException("story closed for you username");
         }
         Files.deleteIfExists(Paths.get(UPLOAD_DIR_FOR_STORIES + story.getMediaUrl()));
         storyRepository.delete(story);
+        userStatsService.onStoryDeleted(user.id());
+        storyViewRecorder.onStoryDeleted(storyId);
+        activeStoryIndex.onStoryDeleted(user.id(), storyId);
     }
 
     public List<StoryDTO> getStoriesOfFollowing(Principal principal) {
-        User user=getUserByPrincipal(principal);
-        List<User> followings=List.copyOf(user.getFollowing());
-        if (followings.isEmpty()) {
-            return List.of();
+        UserCache.UserSummary viewer = getSummaryByPrincipal(principal);
+        List<StoryDTO> stories = new ArrayList<>();
+        for (long ownerId : followGraphIndex.getSubscribers(viewer.id())) {
+            List<ActiveStoryIndex.ActiveStory> active = activeStoryIndex.getActiveStories(ownerId);
+            if (active.isEmpty()) {
+                continue;
+            }
+            userCache.findById(ownerId).ifPresent(owner -> active.forEach(story ->
+                    stories.add(facade.activeStoryToDTO(story, owner, viewer.id(), Map.of()))));
         }
-        return storyRepository.getActiveStoriesByUsers(followings,LocalDateTime.now())
-                .stream()
-                .map(story -> facade.storyToStoryDTO(story, user))
-                .collect(Collectors.toList());
+        return stories;
     }
 
     public Resource getContent(String url) throws IOException {
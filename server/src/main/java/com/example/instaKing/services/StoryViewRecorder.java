@@ -0,0 +1,222 @@
+package com.example.instaKing.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Просмотры историй (write-behind). Для каждой истории в памяти лежит сжатое множество id зрителей
+ * (Roaring64Bitmap): по нему отсекаются повторные просмотры и отвечается "смотрел ли".
+ * Новые просмотры копятся в очереди и раз в app.stories.view-flush-interval-ms пишутся пачкой INSERT
+ * (уникальный индекс story_id, user_id отсекает дубли от других инстансов), story.views
+ * увеличивается одним UPDATE на историю.
+ */
+@Slf4j
+@Component
+public class StoryViewRecorder {
+
+    private static final String LOAD_VIEWERS =
+            "SELECT s.id, v.user_id FROM story s LEFT JOIN story_view v ON v.story_id = s.id WHERE s.id = ?";
+    // удаленная до сброса история пропускается
+    private static final String INSERT_VIEW = "INSERT INTO story_view (story_id, user_id, viewed_at) " +
+            "SELECT ?, ?, ? WHERE EXISTS (SELECT 1 FROM story WHERE id = ?) " +
+            "ON CONFLICT (story_id, user_id) DO NOTHING";
+    private static final String VIEWED_AMONG = "SELECT story_id FROM story_view WHERE user_id = ? AND story_id IN (%s)";
+    private static final String INCREMENT_VIEWS = "UPDATE story SET views = views + ? WHERE id = ?";
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<Long, Roaring64Bitmap> viewers;
+    private final Queue<PendingView> queue = new ConcurrentLinkedQueue<>();
+
+    public StoryViewRecorder(JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${app.stories.viewer-cache-size:50000}") long cacheSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        // история живет сутки, дольше держать множество незачем
+        this.viewers = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterAccess(Duration.ofHours(25))
+                .build();
+    }
+
+    /**
+     * Отмечает просмотр. false - зритель уже смотрел историю.
+     * Пустой Optional - истории нет.
+     */
+    public Optional<Boolean> record(Long storyId, Long viewerId) {
+        Roaring64Bitmap bitmap = viewers.get(storyId, this::load);
+        if (bitmap == null) {
+            return Optional.empty();
+        }
+        synchronized (bitmap) {
+            if (bitmap.contains(viewerId)) {
+                return Optional.of(false);
+            }
+            bitmap.addLong(viewerId);
+        }
+        queue.add(new PendingView(storyId, viewerId, LocalDateTime.now()));
+        return Optional.of(true);
+    }
+
+    public boolean hasViewed(Long storyId, Long viewerId) {
+        Roaring64Bitmap bitmap = viewers.get(storyId, this::load);
+        if (bitmap == null) {
+            return false;
+        }
+        synchronized (bitmap) {
+            return bitmap.contains(viewerId);
+        }
+    }
+
+    /**
+     * Какие из историй зритель уже смотрел. Истории с множеством в кэше проверяются по нему,
+     * остальные - запросом к story_view по BATCH_SIZE историй (плюс еще не записанные просмотры); кэш при этом не заполняется,
+     * чтобы лента историй не грузила множества зрителей всех подписок.
+     */
+    public Set<Long> viewedAmong(Collection<Long> storyIds, Long viewerId) {
+        Set<Long> viewed = new HashSet<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long storyId : storyIds) {
+            Roaring64Bitmap bitmap = viewers.getIfPresent(storyId);
+            if (bitmap == null) {
+                missing.add(storyId);
+                continue;
+            }
+            synchronized (bitmap) {
+                if (bitmap.contains(viewerId)) {
+                    viewed.add(storyId);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return viewed;
+        }
+        Set<Long> missingSet = new HashSet<>(missing);
+        for (PendingView view : queue) {
+            if (view.viewerId().equals(viewerId) && missingSet.contains(view.storyId())) {
+                viewed.add(view.storyId());
+            }
+        }
+        for (int from = 0; from < missing.size(); from += BATCH_SIZE) {
+            List<Long> chunk = missing.subList(from, Math.min(from + BATCH_SIZE, missing.size()));
+            Object[] args = new Object[chunk.size() + 1];
+            args[0] = viewerId;
+            for (int i = 0; i < chunk.size(); i++) {
+                args[i + 1] = chunk.get(i);
+            }
+            String in = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.query(String.format(VIEWED_AMONG, in), rs -> {
+                viewed.add(rs.getLong(1));
+            }, args);
+        }
+        return viewed;
+    }
+
+    // вместе с еще не записанными в story_view
+    public int countViewers(Long storyId) {
+        Roaring64Bitmap bitmap = viewers.get(storyId, this::load);
+        if (bitmap == null) {
+            return 0;
+        }
+        synchronized (bitmap) {
+            return (int) bitmap.getLongCardinality();
+        }
+    }
+
+    public void onStoryDeleted(Long storyId) {
+        AfterCommit.run(() -> viewers.invalidate(storyId));
+    }
+
+    @Scheduled(fixedDelayString = "${app.stories.view-flush-interval-ms:500}")
+    public synchronized void flush() {
+        List<PendingView> batch = new ArrayList<>(BATCH_SIZE);
+        PendingView view;
+        while ((view = queue.poll()) != null) {
+            batch.add(view);
+            if (batch.size() == BATCH_SIZE) {
+                write(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    @PreDestroy
+    public void flushAll() {
+        flush();
+        log.info("Pending story views flushed on shutdown");
+    }
+
+    private void write(List<PendingView> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                int[] inserted = jdbcTemplate.batchUpdate(INSERT_VIEW, batch.stream()
+                        .map(v -> new Object[]{v.storyId(), v.viewerId(), Timestamp.valueOf(v.viewedAt()), v.storyId()})
+                        .toList());
+                Map<Long, Integer> increments = new HashMap<>();
+                for (int i = 0; i < inserted.length; i++) {
+                    if (inserted[i] > 0 || inserted[i] == Statement.SUCCESS_NO_INFO) {
+                        increments.merge(batch.get(i).storyId(), 1, Integer::sum);
+                    }
+                }
+                jdbcTemplate.batchUpdate(INCREMENT_VIEWS, increments.entrySet().stream()
+                        .map(e -> new Object[]{e.getValue(), e.getKey()})
+                        .toList());
+            });
+        } catch (RuntimeException e) {
+            // вернем просмотры в очередь, попробуем на следующем тике
+            log.error("Failed to flush {} story views: {}", batch.size(), e.getMessage());
+            queue.addAll(batch);
+        }
+    }
+
+    // null - истории нет (в кэш не попадает)
+    private Roaring64Bitmap load(Long storyId) {
+        Roaring64Bitmap bitmap = new Roaring64Bitmap();
+        boolean[] exists = {false};
+        jdbcTemplate.query(LOAD_VIEWERS, rs -> {
+            exists[0] = true;
+            long viewerId = rs.getLong(2);
+            if (!rs.wasNull()) {
+                bitmap.addLong(viewerId);
+            }
+        }, storyId);
+        if (!exists[0]) {
+            return null;
+        }
+        bitmap.runOptimize();
+        return bitmap;
+    }
+
+    private record PendingView(Long storyId, Long viewerId, LocalDateTime viewedAt) {
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.instaKing.services;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * "Возможно, вы знакомы": пользователи, на которых подписаны те, на кого подписан текущий пользователь.
+ * Кандидаты ранжируются по числу общих связей. Обход идет по массивам FollowGraphIndex в ForkJoinPool,
+ * большие окрестности обходятся по случайной выборке.
+ */
+@Slf4j
+@Service
+public class SuggestionService {
+
+    // меньше этого числа соседей задачу дальше не делим
+    private static final int LEAF_SIZE = 64;
+
+    private final FollowGraphIndex followGraphIndex;
+    private final ForkJoinPool pool;
+    private final int maxNeighbours;
+    private final int maxPerNeighbour;
+    private final int maxSuggestions;
+    private final LoadingCache<Long, Suggestions> cache;
+
+    public SuggestionService(FollowGraphIndex followGraphIndex,
+                             @Value("${app.suggestions.parallelism:0}") int parallelism,
+                             @Value("${app.suggestions.max-neighbours:2000}") int maxNeighbours,
+                             @Value("${app.suggestions.max-per-neighbour:500}") int maxPerNeighbour,
+                             @Value("${app.suggestions.max-results:50}") int maxSuggestions,
+                             @Value("${app.suggestions.cache-size:100000}") long cacheSize,
+                             @Value("${app.suggestions.cache-ttl-minutes:30}") long cacheTtlMinutes) {
+        this.followGraphIndex = followGraphIndex;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.maxNeighbours = maxNeighbours;
+        this.maxPerNeighbour = maxPerNeighbour;
+        this.maxSuggestions = maxSuggestions;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofMinutes(cacheTtlMinutes))
+                .executor(pool)
+                .build(this::compute);
+    }
+
+    public Suggestions getSuggestions(long userId) {
+        return cache.get(userId);
+    }
+
+    // Подписка: автор сразу пропадает из списка, остальное пересчитывается в фоне (старый список отдается до конца пересчета)
+    public void onFollow(long subscriberId, long authorId) {
+        AfterCommit.run(() -> {
+            cache.asMap().computeIfPresent(subscriberId, (id, suggestions) -> suggestions.without(authorId));
+            cache.refresh(subscriberId);
+        });
+    }
+
+    public void onUnfollow(long subscriberId, long authorId) {
+        AfterCommit.run(() -> cache.refresh(subscriberId));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private Suggestions compute(Long userId) {
+        long[] subscriptions = followGraphIndex.getSubscriptions(userId);
+        if (subscriptions.length == 0) {
+            return Suggestions.EMPTY;
+        }
+        long[] neighbours = sample(subscriptions, maxNeighbours);
+        Counts counts = pool.invoke(new CountTask(userId, subscriptions, neighbours, 0, neighbours.length));
+        return counts.top(maxSuggestions);
+    }
+
+    // случайная выборка без повторов (частичная перетасовка Фишера-Йетса), исходный массив не меняется
+    private static long[] sample(long[] ids, int limit) {
+        if (ids.length <= limit) {
+            return ids;
+        }
+        long[] copy = ids.clone();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < limit; i++) {
+            int j = random.nextInt(i, copy.length);
+            long tmp = copy[i];
+            copy[i] = copy[j];
+            copy[j] = tmp;
+        }
+        return Arrays.copyOf(copy, limit);
+    }
+
+    /**
+     * Результат для пользователя: id кандидатов и число общих связей, по убыванию.
+     */
+    public record Suggestions(long[] userIds, int[] mutualCounts) {
+        static final Suggestions EMPTY = new Suggestions(new long[0], new int[0]);
+
+        Suggestions without(long userId) {
+            for (int i = 0; i < userIds.length; i++) {
+                if (userIds[i] == userId) {
+                    long[] ids = new long[userIds.length - 1];
+                    int[] counts = new int[userIds.length - 1];
+                    System.arraycopy(userIds, 0, ids, 0, i);
+                    System.arraycopy(userIds, i + 1, ids, i, ids.length - i);
+                    System.arraycopy(mutualCounts, 0, counts, 0, i);
+                    System.arraycopy(mutualCounts, i + 1, counts, i, counts.length - i);
+                    return new Suggestions(ids, counts);
+                }
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Кандидаты отсортированы по id, поэтому результаты подзадач сливаются за линейное время.
+     */
+    record Counts(long[] ids, int[] counts, int size) {
+
+        static Counts of(long[] candidates, int length) {
+            Arrays.sort(candidates, 0, length);
+            long[] ids = new long[length];
+            int[] counts = new int[length];
+            int size = 0;
+            for (int i = 0; i < length; i++) {
+                if (size > 0 && ids[size - 1] == candidates[i]) {
+                    counts[size - 1]++;
+                } else {
+                    ids[size] = candidates[i];
+                    counts[size] = 1;
+                    size++;
+                }
+            }
+            return new Counts(ids, counts, size);
+        }
+
+        Counts merge(Counts other) {
+            long[] ids = new long[size + other.size];
+            int[] counts = new int[size + other.size];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < size || j < other.size) {
+                if (j == other.size || (i < size && this.ids[i] < other.ids[j])) {
+                    ids[n] = this.ids[i];
+                    counts[n++] = this.counts[i++];
+                } else if (i == size || other.ids[j] < this.ids[i]) {
+                    ids[n] = other.ids[j];
+                    counts[n++] = other.counts[j++];
+                } else {
+                    ids[n] = this.ids[i];
+                    counts[n++] = this.counts[i++] + other.counts[j++];
+                }
+            }
+            return new Counts(ids, counts, n);
+        }
+
+        // больше общих связей - выше, при равенстве меньший id.
+        // Куча на limit индексов с худшим кандидатом в корне: O(size * log limit) без упаковки в Integer
+        Suggestions top(int limit) {
+            int resultSize = Math.min(limit, size);
+            int[] heap = new int[resultSize];
+            int heapSize = 0;
+            for (int i = 0; i < size; i++) {
+                if (heapSize < resultSize) {
+                    heap[heapSize] = i;
+                    siftUp(heap, heapSize++);
+                } else if (resultSize > 0 && better(i, heap[0])) {
+                    heap[0] = i;
+                    siftDown(heap, heapSize);
+                }
+            }
+            long[] topIds = new long[resultSize];
+            int[] topCounts = new int[resultSize];
+            // из корня уходит худший - заполняем с конца
+            for (int n = heapSize - 1; n >= 0; n--) {
+                int worst = heap[0];
+                topIds[n] = ids[worst];
+                topCounts[n] = counts[worst];
+                heap[0] = heap[n];
+                siftDown(heap, n);
+            }
+            return new Suggestions(topIds, topCounts);
+        }
+
+        private boolean better(int a, int b) {
+            return counts[a] != counts[b] ? counts[a] > counts[b] : ids[a] < ids[b];
+        }
+
+        private void siftUp(int[] heap, int pos) {
+            while (pos > 0) {
+                int parent = (pos - 1) >>> 1;
+                if (!better(heap[parent], heap[pos])) {
+                    return;
+                }
+                swap(heap, parent, pos);
+                pos = parent;
+            }
+        }
+
+        private void siftDown(int[] heap, int heapSize) {
+            int pos = 0;
+            while (true) {
+                int worst = pos;
+                int left = 2 * pos + 1;
+                int right = left + 1;
+                if (left < heapSize && better(heap[worst], heap[left])) {
+                    worst = left;
+                }
+                if (right < heapSize && better(heap[worst], heap[right])) {
+                    worst = right;
+                }
+                if (worst == pos) {
+                    return;
+                }
+                swap(heap, pos, worst);
+                pos = worst;
+            }
+        }
+
+        private static void swap(int[] heap, int i, int j) {
+            int tmp = heap[i];
+            heap[i] = heap[j];
+            heap[j] = tmp;
+        }
+    }
+
+    private final class CountTask extends RecursiveTask<Counts> {
+        private final long userId;
+        private final long[] subscriptions;
+        private final long[] neighbours;
+        private final int from;
+        private final int to;
+
+        CountTask(long userId, long[] subscriptions, long[] neighbours, int from, int to) {
+            this.userId = userId;
+            this.subscriptions = subscriptions;
+            this.neighbours = neighbours;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Counts compute() {
+            if (to - from <= LEAF_SIZE) {
+                return countLeaf();
+            }
+            int mid = (from + to) >>> 1;
+            CountTask left = new CountTask(userId, subscriptions, neighbours, from, mid);
+            left.fork();
+            Counts right = new CountTask(userId, subscriptions, neighbours, mid, to).compute();
+            return left.join().merge(right);
+        }
+
+        private Counts countLeaf() {
+            long[] candidates = new long[256];
+            int length = 0;
+            for (int i = from; i < to; i++) {
+                long[] secondDegree = sample(followGraphIndex.getSubscriptions(neighbours[i]), maxPerNeighbour);
+                for (long candidate : secondDegree) {
+                    // себя и тех, на кого уже подписан, не предлагаем
+                    if (candidate == userId || Arrays.binarySearch(subscriptions, candidate) >= 0) {
+                        continue;
+                    }
+                    if (length == candidates.length) {
+                        candidates = Arrays.copyOf(candidates, length * 2);
+                    }
+                    candidates[length++] = candidate;
+                }
+            }
+            return Counts.of(candidates, length);
+        }
+    }
+}
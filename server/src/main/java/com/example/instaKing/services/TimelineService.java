@@ -0,0 +1,280 @@
+package com.example.instaKing.services;
+
+import com.example.instaKing.models.Post;
+import com.example.instaKing.repositories.PostRepository;
+import com.example.instaKing.repositories.TimelineRepository;
+import com.example.instaKing.repositories.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Домашняя лента: при публикации id поста раскладывается в ленты подписчиков (fan-out on write).
+ * Авторы с очень большим числом подписчиков не раскладываются, их посты подмешиваются при чтении.
+ * Автор, опустившийся ниже порога, при следующей публикации раскладывает подписчикам и свои последние посты.
+ * Кэшированные ленты живут ограниченное время (app.feed.timeline-idle-minutes, app.feed.timeline-max-age-minutes),
+ * поэтому обрезка таблицы и пропущенные изменения со временем в них попадают.
+ */
+@Slf4j
+@Service
+public class TimelineService {
+
+    // сколько последних постов автора попадает в ленту при подписке
+    private static final int BACKFILL_POSTS = 20;
+
+    private static final String INSERT_ENTRY = "INSERT INTO timeline_entry (user_id, post_id, author_id, created_at) " +
+            "VALUES (?, ?, ?, ?) ON CONFLICT (user_id, post_id) DO NOTHING";
+
+    private final TimelineRepository timelineRepository;
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final FollowGraphIndex followGraphIndex;
+
+    private final int capacity;
+    private final long celebrityThreshold;
+    private final Cache<Long, Timeline> timelines;
+    private final Set<Long> celebrities = ConcurrentHashMap.newKeySet();
+
+    public TimelineService(TimelineRepository timelineRepository,
+                           UserRepository userRepository,
+                           PostRepository postRepository,
+                           JdbcTemplate jdbcTemplate,
+                           FollowGraphIndex followGraphIndex,
+                           @Value("${app.feed.timeline-capacity:800}") int capacity,
+                           @Value("${app.feed.celebrity-threshold:10000}") long celebrityThreshold,
+                           @Value("${app.feed.cached-timelines:50000}") long cachedTimelines,
+                           @Value("${app.feed.timeline-idle-minutes:30}") long idleMinutes,
+                           @Value("${app.feed.timeline-max-age-minutes:120}") long maxAgeMinutes) {
+        this.timelineRepository = timelineRepository;
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.followGraphIndex = followGraphIndex;
+        this.capacity = capacity;
+        this.celebrityThreshold = celebrityThreshold;
+        this.timelines = Caffeine.newBuilder()
+                .maximumSize(cachedTimelines)
+                .expireAfterAccess(Duration.ofMinutes(idleMinutes))
+                .expireAfterWrite(Duration.ofMinutes(maxAgeMinutes))
+                .build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadCelebrities() {
+        celebrities.addAll(userRepository.findUserIdsWithSubscribersOver(celebrityThreshold));
+        log.info("Timeline: {} authors are merged at read time", celebrities.size());
+    }
+
+    public void fanOut(Post post) {
+        Long authorId = post.getUser().getId();
+        List<Long> recipients = new ArrayList<>();
+        recipients.add(authorId);
+        if (followGraphIndex.countSubscribers(authorId) > celebrityThreshold) {
+            celebrities.add(authorId);
+        } else {
+            long[] subscribers = followGraphIndex.getSubscribers(authorId);
+            for (long subscriberId : subscribers) {
+                recipients.add(subscriberId);
+            }
+            if (celebrities.remove(authorId)) {
+                // посты, опубликованные выше порога, не разложены и больше не подмешиваются при чтении
+                backfill(Arrays.stream(subscribers).boxed().toList(), authorId);
+            }
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_ENTRY, recipients, 500, (ps, userId) -> {
+            ps.setLong(1, userId);
+            ps.setLong(2, post.getId());
+            ps.setLong(3, authorId);
+            ps.setTimestamp(4, now);
+        });
+
+        AfterCommit.run(() -> {
+            for (Long userId : recipients) {
+                Timeline timeline = timelines.getIfPresent(userId);
+                if (timeline != null) {
+                    timeline.push(post.getId());
+                }
+            }
+        });
+    }
+
+    /**
+     * Пост удален: строки удаляются сразу, id убирается из кэшированных лент автора и подписчиков после коммита.
+     */
+    public void removePost(Long postId, Long authorId) {
+        timelineRepository.deleteByPostId(postId);
+        AfterCommit.run(() -> {
+            removeCached(authorId, postId);
+            for (long subscriberId : followGraphIndex.getSubscribers(authorId)) {
+                removeCached(subscriberId, postId);
+            }
+        });
+    }
+
+    //подписка: подтягиваем последние посты автора, отписка: убираем их из ленты
+    public void onFollow(Long subscriberId, Long authorId) {
+        if (celebrities.contains(authorId)) {
+            return;
+        }
+        backfill(List.of(subscriberId), authorId);
+    }
+
+    public void onUnfollow(Long subscriberId, Long authorId) {
+        timelineRepository.deleteByUserIdAndAuthorId(subscriberId, authorId);
+        AfterCommit.run(() -> timelines.invalidate(subscriberId));
+    }
+
+    /**
+     * Страница ленты: посты с id меньше cursor, от новых к старым.
+     */
+    public FeedSlice getFeed(Long userId, Long cursor, int size) {
+        long beforeId = cursor == null ? Long.MAX_VALUE : cursor;
+        TreeSet<Long> ids = new TreeSet<>(Comparator.reverseOrder());
+        ids.addAll(timelines.get(userId, this::loadTimeline).page(beforeId, size));
+
+        List<Long> followedCelebrities = celebrities.stream()
+                .filter(authorId -> followGraphIndex.isSubscribed(userId, authorId))
+                .toList();
+        if (!followedCelebrities.isEmpty()) {
+            ids.addAll(postRepository.findIdsByUserIdsBefore(followedCelebrities, beforeId, Limit.of(size)));
+        }
+
+        List<Long> pageIds = ids.stream().limit(size).toList();
+        Map<Long, Post> postsById = postRepository.findAllById(pageIds).stream()
+                .collect(Collectors.toMap(Post::getId, Function.identity()));
+        List<Post> posts = pageIds.stream()
+                .map(postsById::get)
+                .filter(Objects::nonNull)
+                .toList();
+        Long nextCursor = pageIds.size() < size ? null : pageIds.get(pageIds.size() - 1);
+        return new FeedSlice(posts, nextCursor);
+    }
+
+    @Scheduled(fixedDelayString = "${app.feed.trim-interval-ms:3600000}")
+    public void trimTimelines() {
+        int removed = timelineRepository.trimToCapacity(capacity);
+        if (removed > 0) {
+            log.info("Timeline: trimmed {} entries", removed);
+        }
+    }
+
+    // Последние посты автора в ленты подписчиков; кэш сбрасывается после коммита,
+    // до него параллельное чтение закэшировало бы ленту без новых строк
+    private void backfill(List<Long> subscriberIds, Long authorId) {
+        if (subscriberIds.isEmpty()) {
+            return;
+        }
+        List<Long> recent = postRepository.findIdsByUserIdsBefore(List.of(authorId), Long.MAX_VALUE, Limit.of(BACKFILL_POSTS));
+        List<long[]> entries = new ArrayList<>(subscriberIds.size() * recent.size());
+        for (Long subscriberId : subscriberIds) {
+            for (Long postId : recent) {
+                entries.add(new long[]{subscriberId, postId});
+            }
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_ENTRY, entries, 500, (ps, entry) -> {
+            ps.setLong(1, entry[0]);
+            ps.setLong(2, entry[1]);
+            ps.setLong(3, authorId);
+            ps.setTimestamp(4, now);
+        });
+        AfterCommit.run(() -> timelines.invalidateAll(subscriberIds));
+    }
+
+    private void removeCached(long userId, long postId) {
+        Timeline timeline = timelines.getIfPresent(userId);
+        if (timeline != null) {
+            timeline.remove(postId);
+        }
+    }
+
+    private Timeline loadTimeline(Long userId) {
+        return new Timeline(timelineRepository.findPostIds(userId, Limit.of(capacity)), capacity);
+    }
+
+    public record FeedSlice(List<Post> posts, Long nextCursor) {
+    }
+
+    /**
+     * Ограниченный список id постов, отсортированный по убыванию.
+     */
+    static final class Timeline {
+        private final int capacity;
+        private long[] ids;
+        private int size;
+
+        Timeline(List<Long> newestFirst, int capacity) {
+            this.capacity = capacity;
+            this.ids = new long[Math.min(capacity, Math.max(16, newestFirst.size() + 16))];
+            for (Long id : newestFirst) {
+                if (size == ids.length) {
+                    break;
+                }
+                ids[size++] = id;
+            }
+        }
+
+        synchronized void push(long postId) {
+            int at = firstBelow(postId + 1);
+            if ((at < size && ids[at] == postId) || at == capacity) {
+                return;
+            }
+            if (size == ids.length && ids.length < capacity) {
+                ids = Arrays.copyOf(ids, Math.min(capacity, ids.length * 2));
+            }
+            int tail = Math.min(size, ids.length - 1) - at;
+            System.arraycopy(ids, at, ids, at + 1, tail);
+            ids[at] = postId;
+            size = at + tail + 1;
+        }
+
+        synchronized void remove(long postId) {
+            int at = firstBelow(postId + 1);
+            if (at < size && ids[at] == postId) {
+                System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+                size--;
+            }
+        }
+
+        synchronized List<Long> page(long beforeId, int limit) {
+            List<Long> page = new ArrayList<>(limit);
+            for (int i = firstBelow(beforeId); i < size && page.size() < limit; i++) {
+                page.add(ids[i]);
+            }
+            return page;
+        }
+
+        //индекс первого id меньше bound (массив отсортирован по убыванию)
+        private int firstBelow(long bound) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (ids[mid] >= bound) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
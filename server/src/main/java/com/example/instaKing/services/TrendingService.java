@@ -0,0 +1,191 @@
+package com.example.instaKing.services;
+
+import com.example.instaKing.models.Post;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Рейтинг для explore: свежие посты по взвешенной активности (лайки, избранное, комментарии) с затуханием.
+ * Используется forward decay: вклад события растет как 2^((t - landmark) / halfLife), поэтому
+ * порядок постов со временем не меняется и пересчитывать старые оценки не нужно.
+ */
+@Slf4j
+@Service
+public class TrendingService {
+
+    private static final double POST_WEIGHT = 1;
+    private static final double LIKE_WEIGHT = 1;
+    private static final double COMMENT_WEIGHT = 2;
+    private static final double FAVORITE_WEIGHT = 3;
+
+    // Восстановление рейтинга: сам пост и все события по постам моложе окна
+    private static final String LOAD_EVENTS =
+            "SELECT p.id, p.created_at, p.created_at, 0 FROM post p WHERE p.created_at > ? " +
+            "UNION ALL SELECT p.id, p.created_at, pl.created_at, 1 FROM post_like pl " +
+            "JOIN post p ON p.id = pl.post_id WHERE p.created_at > ? " +
+            "UNION ALL SELECT p.id, p.created_at, c.created_date, 2 FROM comment c " +
+            "JOIN post p ON p.id = c.post_id WHERE p.created_at > ? " +
+            "UNION ALL SELECT p.id, p.created_at, COALESCE(f.added_at, p.created_at), 3 FROM favorite f " +
+            "JOIN post p ON p.id = f.post_id WHERE p.created_at > ?";
+    private static final double[] WEIGHTS = {POST_WEIGHT, LIKE_WEIGHT, COMMENT_WEIGHT, FAVORITE_WEIGHT};
+
+    // экспонента 2^x остается в пределах double примерно до x = 1000, перестраиваемся заранее
+    private static final double MAX_EXPONENT = 512;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration window;
+    private final double halfLifeSeconds;
+    private final int maxPosts;
+
+    private volatile Ranking ranking;
+
+    public TrendingService(JdbcTemplate jdbcTemplate,
+                           @Value("${app.trending.window-hours:72}") long windowHours,
+                           @Value("${app.trending.half-life-hours:6}") double halfLifeHours,
+                           @Value("${app.trending.max-posts:20000}") int maxPosts) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.window = Duration.ofHours(windowHours);
+        this.halfLifeSeconds = halfLifeHours * 3600;
+        this.maxPosts = maxPosts;
+        this.ranking = new Ranking(epochSeconds(LocalDateTime.now()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Ranking rebuilt = new Ranking(epochSeconds(LocalDateTime.now()));
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(window));
+        jdbcTemplate.query(LOAD_EVENTS, rs -> {
+            rebuilt.add(rs.getLong(1),
+                    rs.getTimestamp(2).toLocalDateTime(),
+                    decayed(rebuilt, WEIGHTS[rs.getInt(4)], rs.getTimestamp(3).toLocalDateTime()));
+        }, cutoff, cutoff, cutoff, cutoff);
+        ranking = rebuilt;
+        trimToMaxPosts(rebuilt);
+        log.info("Trending: ranked {} posts", rebuilt.entries.size());
+    }
+
+    public void onPostCreated(Post post) {
+        record(post, POST_WEIGHT);
+    }
+
+    public void onLike(Post post) {
+        record(post, LIKE_WEIGHT);
+    }
+
+    public void onComment(Post post) {
+        record(post, COMMENT_WEIGHT);
+    }
+
+    public void onFavorite(Post post) {
+        record(post, FAVORITE_WEIGHT);
+    }
+
+    public void removePost(Long postId) {
+        ranking.remove(postId);
+    }
+
+    /**
+     * Страница explore: id постов от самого популярного.
+     */
+    public List<Long> getTopPostIds(int page, int size) {
+        return ranking.ordered.stream()
+                .skip((long) page * size)
+                .limit(size)
+                .map(Entry::postId)
+                .toList();
+    }
+
+    // Убираем посты старше окна; раз в несколько недель сдвигаем landmark, пересобирая рейтинг из БД
+    @Scheduled(fixedDelayString = "${app.trending.prune-interval-ms:600000}")
+    public void prune() {
+        Ranking current = ranking;
+        if ((epochSeconds(LocalDateTime.now()) - current.landmark) / halfLifeSeconds > MAX_EXPONENT / 2) {
+            rebuild();
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minus(window);
+        current.entries.values().stream()
+                .filter(e -> e.createdAt().isBefore(cutoff))
+                .map(Entry::postId)
+                .toList()
+                .forEach(current::remove);
+    }
+
+    //снятие лайка или избранного рейтинг не уменьшает, учитывается только приток активности
+    private void record(Post post, double weight) {
+        if (post.getCreatedAt() == null || post.getCreatedAt().isBefore(LocalDateTime.now().minus(window))) {
+            return;
+        }
+        AfterCommit.run(() -> {
+            Ranking current = ranking;
+            current.add(post.getId(), post.getCreatedAt(), decayed(current, weight, LocalDateTime.now()));
+            trimToMaxPosts(current);
+        });
+    }
+
+    private void trimToMaxPosts(Ranking current) {
+        while (current.entries.size() > maxPosts) {
+            Entry last = current.ordered.pollLast();
+            if (last == null) {
+                return;
+            }
+            current.entries.remove(last.postId(), last);
+        }
+    }
+
+    private double decayed(Ranking current, double weight, LocalDateTime at) {
+        return weight * Math.pow(2, (epochSeconds(at) - current.landmark) / halfLifeSeconds);
+    }
+
+    private static long epochSeconds(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+
+    private record Entry(long postId, LocalDateTime createdAt, double score) {
+    }
+
+    private static final class Ranking {
+        private static final Comparator<Entry> ORDER = Comparator.comparingDouble(Entry::score).reversed()
+                .thenComparing(Comparator.comparingLong(Entry::postId).reversed());
+
+        private final long landmark;
+        private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+        private final NavigableSet<Entry> ordered = new ConcurrentSkipListSet<>(ORDER);
+
+        Ranking(long landmark) {
+            this.landmark = landmark;
+        }
+
+        // compute держит блокировку на ключе, поэтому замена записи в ordered атомарна для одного поста
+        void add(long postId, LocalDateTime createdAt, double score) {
+            entries.compute(postId, (id, old) -> {
+                Entry next = new Entry(id, createdAt, old == null ? score : old.score() + score);
+                if (old != null) {
+                    ordered.remove(old);
+                }
+                ordered.add(next);
+                return next;
+            });
+        }
+
+        void remove(Long postId) {
+            entries.computeIfPresent(postId, (id, old) -> {
+                ordered.remove(old);
+                return null;
+            });
+        }
+    }
+}
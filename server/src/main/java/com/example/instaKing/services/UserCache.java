@@ -0,0 +1,131 @@
+package com.example.instaKing.services;
+
+import com.example.instaKing.models.User;
+import com.example.instaKing.models.enums.ERole;
+import com.example.instaKing.repositories.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Кэш неизменяемых сводок пользователей (id, username, имя, аватар, bio, роли) по id и по username.
+ * Сервисы берут отсюда id текущего пользователя и связывают сущности через ссылку
+ * (getReferenceById), не читая строку users на каждый запрос.
+ * Изменения профиля сбрасывают запись после коммита, TTL ограничивает устаревание остального.
+ */
+@Component
+public class UserCache {
+
+    private final UserRepository userRepository;
+    private final Cache<Long, UserSummary> byId;
+    private final Cache<String, UserSummary> byUsername;
+
+    public UserCache(UserRepository userRepository,
+                     MeterRegistry meterRegistry,
+                     @Value("${app.users.cache-size:100000}") long maxSize,
+                     @Value("${app.users.cache-ttl-seconds:600}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.byId = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.byUsername = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        // cache.gets{cache=users.by-id,result=hit|miss} и т.д. в /actuator/metrics
+        CaffeineCacheMetrics.monitor(meterRegistry, byId, "users.by-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, byUsername, "users.by-username");
+    }
+
+    // загруженная по одному ключу сводка сразу кладется и под другой
+    public Optional<UserSummary> findByUsername(String username) {
+        if (username == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(byUsername.get(username, name ->
+                userRepository.findWithRolesByUsername(name).map(UserSummary::of)
+                        .map(summary -> {
+                            byId.put(summary.id(), summary);
+                            return summary;
+                        })
+                        .orElse(null)));
+    }
+
+    /**
+     * Сводки пачки пользователей; отсутствующие в кэше читаются одним запросом.
+     * Неизвестных username в результате нет.
+     */
+    public Map<String, UserSummary> findAllByUsername(Collection<String> usernames) {
+        return byUsername.getAll(usernames, missing -> {
+            Map<String, UserSummary> loaded = new HashMap<>();
+            for (User user : userRepository.findWithRolesByUsernameIn(Set.copyOf(missing))) {
+                UserSummary summary = UserSummary.of(user);
+                byId.put(summary.id(), summary);
+                loaded.put(summary.username(), summary);
+            }
+            return loaded;
+        });
+    }
+
+    public Optional<UserSummary> findById(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(byId.get(id, key ->
+                userRepository.findWithRolesById(key).map(UserSummary::of)
+                        .map(summary -> {
+                            byUsername.put(summary.username(), summary);
+                            return summary;
+                        })
+                        .orElse(null)));
+    }
+
+    /**
+     * Сводки пачки пользователей по id; отсутствующие в кэше читаются одним запросом.
+     */
+    public Map<Long, UserSummary> findAllById(Collection<Long> ids) {
+        return byId.getAll(ids, missing -> {
+            Map<Long, UserSummary> loaded = new HashMap<>();
+            for (User user : userRepository.findWithRolesByIdIn(Set.copyOf(missing))) {
+                UserSummary summary = UserSummary.of(user);
+                byUsername.put(summary.username(), summary);
+                loaded.put(summary.id(), summary);
+            }
+            return loaded;
+        });
+    }
+
+    /**
+     * Профиль изменился: запись сбрасывается после коммита и перечитывается при следующем обращении.
+     */
+    public void invalidate(User user) {
+        Long id = user.getId();
+        String username = user.getUsername();
+        AfterCommit.run(() -> {
+            byId.invalidate(id);
+            byUsername.invalidate(username);
+        });
+    }
+
+    public record UserSummary(long id, String username, String firstname, String lastname,
+                              String avatarUrl, String bio, Set<ERole> roles) {
+
+        static UserSummary of(User user) {
+            return new UserSummary(user.getId(), user.getUsername(), user.getFirstname(), user.getLastname(),
+                    user.getAvatarUrl(), user.getBio(), Set.copyOf(user.getRoles()));
+        }
+    }
+}
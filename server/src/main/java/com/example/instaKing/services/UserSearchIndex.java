@@ -0,0 +1,284 @@
+package com.example.instaKing.services;
+
+import com.example.instaKing.models.User;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Индекс для автодополнения поиска пользователей: отсортированный словарь слов (username, имя, фамилия)
+ * и для каждого слова отсортированный long[] с id. Поиск по префиксу - это подотрезок словаря.
+ * В кандидаты (не больше app.search.max-candidates) попадают подходящие подписки и подписчики ищущего,
+ * точные совпадения слова и самые популярные по числу подписчиков из всего подотрезка: они считаются
+ * одним проходом с ограниченной кучей и кэшируются по префиксу, чтобы короткий префикс не пересчитывался
+ * на каждое нажатие клавиши.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+public class UserSearchIndex {
+
+    private static final long[] EMPTY = new long[0];
+    private static final String LOAD_USERS = "SELECT id, username, firstname, lastname, avatar_url FROM users ORDER BY id";
+
+    // вклад в ранжирование
+    private static final double EXACT_USERNAME = 100;
+    private static final double USERNAME_PREFIX = 50;
+    private static final double NAME_PREFIX = 20;
+    private static final double SUBSCRIBED_BY_SEARCHER = 30;
+    private static final double SUBSCRIBED_TO_SEARCHER = 10;
+    private static final double FOLLOWERS_WEIGHT = 5;
+    // сколько подписок и подписчиков ищущего проверяется на совпадение при каждом запросе
+    private static final int MAX_SOCIAL_SCAN = 5000;
+    private static final int MAX_CACHED_PREFIXES = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FollowGraphIndex followGraphIndex;
+    private final int maxCandidates;
+
+    private final ConcurrentSkipListMap<String, long[]> terms = new ConcurrentSkipListMap<>();
+    // Все пользователи, без вытеснения: поиск по префиксу должен видеть каждого.
+    // Профиль с узлом map, строками и словами - порядка 400 байт, то есть ~400 МБ на миллион пользователей;
+    // при росте за эти пределы индекс нужно выносить из heap (Lucene, как PostSearchIndex)
+    private final Map<Long, Profile> profiles = new ConcurrentHashMap<>();
+    // самые популярные id для префикса; число подписчиков меняется, поэтому список живет недолго
+    private final Cache<String, long[]> popular;
+
+    public UserSearchIndex(JdbcTemplate jdbcTemplate,
+                           FollowGraphIndex followGraphIndex,
+                           @Value("${app.search.max-candidates:200}") int maxCandidates,
+                           @Value("${app.search.popular-ttl-seconds:60}") long popularTtlSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.followGraphIndex = followGraphIndex;
+        this.maxCandidates = maxCandidates;
+        this.popular = Caffeine.newBuilder()
+                .maximumSize(MAX_CACHED_PREFIXES)
+                .expireAfterWrite(Duration.ofSeconds(popularTtlSeconds))
+                .build();
+    }
+
+    // id приходят по возрастанию, поэтому списки id для слов собираются дописыванием в конец
+    @PostConstruct
+    public void load() {
+        Map<String, long[]> buffers = new HashMap<>();
+        Map<String, Integer> sizes = new HashMap<>();
+        jdbcTemplate.query(LOAD_USERS, rs -> {
+            Profile profile = Profile.of(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5));
+            profiles.put(profile.id(), profile);
+            for (String term : profile.terms()) {
+                int size = sizes.getOrDefault(term, 0);
+                long[] ids = buffers.get(term);
+                if (ids == null || ids.length == size) {
+                    ids = ids == null ? new long[1] : Arrays.copyOf(ids, size * 2);
+                    buffers.put(term, ids);
+                }
+                ids[size] = profile.id();
+                sizes.put(term, size + 1);
+            }
+        });
+        buffers.forEach((term, ids) -> terms.put(term, Arrays.copyOf(ids, sizes.get(term))));
+        log.info("User search: indexed {} users, {} terms", profiles.size(), terms.size());
+    }
+
+    /**
+     * Данные для поиска хранятся отдельно от сущности, изменение применяется после коммита.
+     */
+    public void index(User user) {
+        Profile profile = Profile.of(user.getId(), user.getUsername(), user.getFirstname(),
+                user.getLastname(), user.getAvatarUrl());
+        AfterCommit.run(() -> put(profile));
+    }
+
+    /**
+     * Лучшие limit совпадений по префиксу. Все слова запроса должны быть префиксами слов профиля.
+     */
+    public List<Profile> search(String query, Long searcherId, int limit) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) {
+            return List.of();
+        }
+        String first = tokens.get(0);
+        Set<Long> candidates = new LinkedHashSet<>();
+        if (searcherId != null) {
+            // на знакомых отводится не больше половины лимита, остальное - словарю (там точные совпадения)
+            int socialLimit = maxCandidates / 2;
+            addSocial(candidates, followGraphIndex.getSubscriptions(searcherId), first, socialLimit);
+            addSocial(candidates, followGraphIndex.getSubscribers(searcherId), first, socialLimit);
+        }
+        addAll(candidates, terms.getOrDefault(first, EMPTY));
+        addAll(candidates, popular.get(first, this::mostFollowed));
+
+        List<Scored> scored = new ArrayList<>(candidates.size());
+        for (Long id : candidates) {
+            Profile profile = profiles.get(id);
+            // кэш популярных мог устареть после переименования, поэтому проверяются все слова
+            if (profile != null && profile.matchesAll(tokens)) {
+                scored.add(new Scored(profile, score(profile, tokens, searcherId)));
+            }
+        }
+        scored.sort(Comparator.comparingDouble(Scored::score).reversed()
+                .thenComparing(s -> s.profile().username()));
+        return scored.stream()
+                .limit(limit)
+                .map(Scored::profile)
+                .toList();
+    }
+
+    private void addAll(Set<Long> candidates, long[] ids) {
+        for (int i = 0; i < ids.length && candidates.size() < maxCandidates; i++) {
+            candidates.add(ids[i]);
+        }
+    }
+
+    /**
+     * Top-K по числу подписчиков среди всех пользователей со словом на prefix, по убыванию.
+     * Один проход по подотрезку словаря с кучей на maxCandidates элементов.
+     */
+    long[] mostFollowed(String prefix) {
+        // минимум на вершине: {число подписчиков, id}
+        PriorityQueue<long[]> heap = new PriorityQueue<>(maxCandidates + 1,
+                Comparator.<long[]>comparingLong(e -> e[0]).thenComparingLong(e -> -e[1]));
+        Set<Long> inHeap = new HashSet<>();
+        for (long[] ids : terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            for (long id : ids) {
+                if (inHeap.contains(id)) {
+                    // у профиля несколько слов с этим префиксом
+                    continue;
+                }
+                long[] entry = {followGraphIndex.countSubscribers(id), id};
+                if (heap.size() < maxCandidates) {
+                    heap.add(entry);
+                    inHeap.add(id);
+                } else if (heap.comparator().compare(entry, heap.peek()) > 0) {
+                    inHeap.remove(heap.poll()[1]);
+                    heap.add(entry);
+                    inHeap.add(id);
+                }
+            }
+        }
+        long[] result = new long[heap.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = heap.poll()[1];
+        }
+        return result;
+    }
+
+    private void addSocial(Set<Long> candidates, long[] ids, String token, int socialLimit) {
+        int scan = Math.min(ids.length, MAX_SOCIAL_SCAN);
+        for (int i = 0; i < scan && candidates.size() < socialLimit; i++) {
+            Profile profile = profiles.get(ids[i]);
+            if (profile != null && profile.matches(token)) {
+                candidates.add(ids[i]);
+            }
+        }
+    }
+
+    private double score(Profile profile, List<String> tokens, Long searcherId) {
+        String query = tokens.get(0);
+        String username = profile.terms()[0];
+        double score;
+        if (tokens.size() == 1 && username.equals(query)) {
+            score = EXACT_USERNAME;
+        } else if (username.startsWith(query)) {
+            score = USERNAME_PREFIX;
+        } else {
+            score = NAME_PREFIX;
+        }
+        score += FOLLOWERS_WEIGHT * Math.log1p(followGraphIndex.countSubscribers(profile.id()));
+        if (searcherId != null) {
+            if (followGraphIndex.isSubscribed(searcherId, profile.id())) {
+                score += SUBSCRIBED_BY_SEARCHER;
+            }
+            if (followGraphIndex.isSubscribed(profile.id(), searcherId)) {
+                score += SUBSCRIBED_TO_SEARCHER;
+            }
+        }
+        return score;
+    }
+
+    private void put(Profile profile) {
+        List<String> newTerms = List.of(profile.terms());
+        Profile old = profiles.put(profile.id(), profile);
+        if (old != null) {
+            for (String term : old.terms()) {
+                if (!newTerms.contains(term)) {
+                    terms.computeIfPresent(term, (t, ids) -> FollowGraphIndex.remove(ids, profile.id()));
+                }
+            }
+        }
+        for (String term : newTerms) {
+            terms.compute(term, (t, ids) -> FollowGraphIndex.insert(ids, profile.id()));
+        }
+        // Неполный список префикса содержит всех подходящих, новый профиль должен в нем сразу появиться.
+        // В полный без подписчиков он бы не попал; устаревшие id в нем отсеивает проверка в search
+        for (String term : newTerms) {
+            for (int length = 1; length <= term.length(); length++) {
+                String prefix = term.substring(0, length);
+                long[] cached = popular.policy().getIfPresentQuietly(prefix);
+                if (cached != null && cached.length < maxCandidates) {
+                    popular.invalidate(prefix);
+                }
+            }
+        }
+    }
+
+    static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
+
+    static List<String> tokenize(String value) {
+        String normalized = normalize(value);
+        List<String> tokens = new ArrayList<>(2);
+        for (String token : normalized.split(" ")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * terms - нормализованные слова профиля без повторов, первым идет username.
+     */
+    public record Profile(long id, String username, String firstname, String lastname, String avatarUrl, String[] terms) {
+
+        static Profile of(long id, String username, String firstname, String lastname, String avatarUrl) {
+            Set<String> terms = new LinkedHashSet<>();
+            terms.add(normalize(username));
+            terms.addAll(tokenize(firstname));
+            terms.addAll(tokenize(lastname));
+            return new Profile(id, username, firstname, lastname, avatarUrl, terms.toArray(String[]::new));
+        }
+
+        boolean matchesAll(List<String> tokens) {
+            for (String token : tokens) {
+                if (!matches(token)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean matches(String token) {
+            for (String term : terms) {
+                if (term.startsWith(token)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private record Scored(Profile profile, double score) {
+    }
+}
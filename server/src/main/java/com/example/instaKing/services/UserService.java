@@ -1,13 +1,17 @@
 package com.example.instaKing.services;
 
+import com.example.instaKing.dto.RelationshipDTO;
+import com.example.instaKing.dto.SuggestionDTO;
 import com.example.instaKing.dto.UserDTO;
 import com.example.instaKing.exceptions.UserExistException;
-import com.example.instaKing.exceptions.UserNotFoundException;
 import com.example.instaKing.facade.UserFacade;
 import com.example.instaKing.models.User;
 import com.example.instaKing.models.enums.ERole;
+import com.example.instaKing.payload.request.PageCursor;
 import com.example.instaKing.payload.request.SignUpRequest;
 import com.example.instaKing.repositories.UserRepository;
+import com.example.instaKing.repositories.projections.FollowView;
+import com.example.instaKing.repositories.projections.UserAvatarView;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,6 +21,11 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.security.Principal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -30,12 +39,27 @@ public class UserService {
     private final UserRepository userRepository;
     private final BCryptPasswordEncoder passwordEncoder;
     private final UserFacade userFacade;
+    private final TimelineService timelineService;
+    private final FollowGraphIndex followGraphIndex;
+    private final UserStatsService userStatsService;
+    private final SuggestionService suggestionService;
+    private final UserSearchIndex userSearchIndex;
+    private final UserCache userCache;
+
+    // курсор первой страницы: позже любой подписки
+    private static final PageCursor FIRST_PAGE = new PageCursor(LocalDateTime.of(9999, 1, 1, 0, 0), Long.MAX_VALUE);
 
     @Autowired
-    public UserService(UserRepository userRepository, BCryptPasswordEncoder passwordEncoder, UserFacade userFacade) {
+    public UserService(UserRepository userRepository, BCryptPasswordEncoder passwordEncoder, UserFacade userFacade, TimelineService timelineService, FollowGraphIndex followGraphIndex, UserStatsService userStatsService, SuggestionService suggestionService, UserSearchIndex userSearchIndex, UserCache userCache) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.userFacade = userFacade;
+        this.timelineService = timelineService;
+        this.followGraphIndex = followGraphIndex;
+        this.userStatsService = userStatsService;
+        this.suggestionService = suggestionService;
+        this.userSearchIndex = userSearchIndex;
+        this.userCache = userCache;
     }
 
     public User createUser(SignUpRequest userIn) {
@@ -49,7 +73,9 @@ public class UserService {
 
         try {
             log.info("UserService created", user.getUsername());
-            return userRepository.save(user);
+            User saved = userRepository.save(user);
+            userSearchIndex.index(saved);
+            return saved;
         } catch (Exception e) {
             log.error("error during registration" + e.getMessage());
             throw new UserExistException("the user " + user.getUsername() + " already exist");
@@ -58,30 +84,55 @@ public class UserService {
 
     public User updateUser(UserDTO userDTO, Principal principal) {
 
-        User user = getUserByPrincipal(principal);
+        // профиль меняется целиком, поэтому строка читается сразу, а не через прокси
+        User user = userRepository.findById(getUserId(principal.getName()))
+                .orElseThrow(() -> new UsernameNotFoundException("username not found with username" + principal.getName()));
         user.setFirstname(userDTO.getFirstname());
         user.setLastname(userDTO.getLastname());
         user.setBio(userDTO.getBio());
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        userSearchIndex.index(saved);
+        userCache.invalidate(saved);
+        return saved;
     }
 
     public User getCurrentUser(Principal principal) {
         return getUserByPrincipal(principal);
     }
 
+    // прокси по id из UserCache: для связей и запросов, чтение других полей - отдельный SELECT
     private User getUserByPrincipal(Principal principal) {
         String username = principal.getName();
-        return userRepository.findByUsername(username)
+        return userCache.findByUsername(username)
+                .map(summary -> userRepository.getReferenceById(summary.id()))
                 .orElseThrow(() -> new UsernameNotFoundException("username not found with username" + username));
     }
 
+    // id по username из UserCache, без запроса к users
+    private Long getUserId(String username) {
+        return userCache.findByUsername(username)
+                .map(UserCache.UserSummary::id)
+                .orElseThrow(() -> new UsernameNotFoundException(username));
+    }
+
+    public UserCache.UserSummary getSummary(String username) {
+        return userCache.findByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("username not found with username" + username));
+    }
+
+    public UserCache.UserSummary getSummaryById(Long userId) {
+        return userCache.findById(userId)
+                .orElseThrow(() -> new UsernameNotFoundException("username not found with userid" + userId));
+    }
+
     public User getUserById(Long userId) {
         return userRepository.findById(userId)
                 .orElseThrow(() -> new UsernameNotFoundException("username not found with userid" + userId));
     }
 
     public User getUserByUsername(String username) {
-        return userRepository.findByUsername(username)
+        return userCache.findByUsername(username)
+                .map(summary -> userRepository.getReferenceById(summary.id()))
                 .orElseThrow(() -> new UsernameNotFoundException("username not found with userid" + username));
     }
 
@@ -92,6 +143,21 @@ public class UserService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Подписчики пользователя страницами по size + 1 записи, от последних подписавшихся.
+     */
+    public List<FollowView> getSubscribersBefore(String username, PageCursor cursor, int size) {
+        Long userId = getUserId(username);
+        PageCursor from = cursor != null ? cursor : FIRST_PAGE;
+        return userRepository.findSubscribersBefore(userId, from.createdAt(), from.id(), size + 1);
+    }
+
+    public List<FollowView> getSubscriptionsBefore(String username, PageCursor cursor, int size) {
+        Long userId = getUserId(username);
+        PageCursor from = cursor != null ? cursor : FIRST_PAGE;
+        return userRepository.findSubscriptionsBefore(userId, from.createdAt(), from.id(), size + 1);
+    }
+
     public List<UserDTO> getFollowingUsers(String username) {
         return userRepository.findAllByFollowing_Username(username)
                 .stream()
@@ -105,89 +171,140 @@ public class UserService {
             return;
         }
         User follower = getUserByPrincipal(principal);
-        User following = userRepository.findByUsername(followingUsername).orElseThrow();
-        following.getFollowing().add(follower);
+        User following = getUserByUsername(followingUsername);
+        if (!following.getFollowing().add(follower)) {
+            return;
+        }
+        userStatsService.onFollow(follower.getId(), following.getId());
+        followGraphIndex.onFollow(follower.getId(), following.getId());
+        suggestionService.onFollow(follower.getId(), following.getId());
+        timelineService.onFollow(follower.getId(), following.getId());
     }
 
     @Transactional
     public void unfollowUser(Principal principal, String followingUsername) {
         User follower = getUserByPrincipal(principal);
-        User following = userRepository.findByUsername(followingUsername).orElseThrow();
-        following.getFollowing().remove(follower);
+        User following = getUserByUsername(followingUsername);
+        if (!following.getFollowing().remove(follower)) {
+            return;
+        }
         userRepository.save(following);
+        userStatsService.onUnfollow(follower.getId(), following.getId());
+        followGraphIndex.onUnfollow(follower.getId(), following.getId());
+        suggestionService.onUnfollow(follower.getId(), following.getId());
+        timelineService.onUnfollow(follower.getId(), following.getId());
     }
 
     public boolean isFollowing(String currentUsername, String targetUsername) {
+        Long currentUserId = getUserId(currentUsername);
+        Long targetUserId = getUserId(targetUsername);
+        return followGraphIndex.isSubscribed(currentUserId, targetUserId);
+    }
 
-        User currentUser = userRepository.findByUsername(currentUsername)
-                .orElseThrow(() -> new UsernameNotFoundException(currentUsername));
-        User targetUser = userRepository.findByUsername(targetUsername)
-                .orElseThrow(() -> new UsernameNotFoundException(targetUsername));
-        Set<User> followers = new HashSet<>(currentUser.getFollowers());
-        return followers.contains(targetUser);
+    public List<SuggestionDTO> getSuggestions(Long userId, int limit) {
+        SuggestionService.Suggestions suggestions = suggestionService.getSuggestions(userId);
+        int size = Math.min(limit, suggestions.userIds().length);
+        if (size == 0) {
+            return List.of();
+        }
+        List<Long> ids = Arrays.stream(suggestions.userIds(), 0, size).boxed().toList();
+        Map<Long, UserAvatarView> users = userRepository.findAvatarsByIds(ids).stream()
+                .collect(Collectors.toMap(UserAvatarView::getId, u -> u));
+        List<SuggestionDTO> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            UserAvatarView user = users.get(ids.get(i));
+            if (user != null) {
+                result.add(new SuggestionDTO(user.getId(), user.getUsername(), user.getAvatarUrl(),
+                        suggestions.mutualCounts()[i]));
+            }
+        }
+        return result;
     }
 
-    public List<User> search(String query) {
-        return userRepository.findAllByUsernameContaining(query);
+    public List<UserSearchIndex.Profile> search(String query, Long searcherId, int limit) {
+        return userSearchIndex.search(query, searcherId, limit);
     }
 
     public Map<String, Boolean> isFollowingBatch(String currentUsername, List<String> usernames) {
-        User currentUser = userRepository.findByUsername(currentUsername)
-                .orElseThrow(() -> new UserNotFoundException(currentUsername));
-        Set<User> following = currentUser.getFollowers();
-        return usernames.stream()
-                .collect(Collectors.toMap(
-                        username -> username,
-                        username -> following.stream()
-                                .anyMatch(u -> u.getUsername().equals(username))
-                ));
+        Map<String, Boolean> result = new HashMap<>();
+        usernames.forEach(username -> result.put(username, false));
+        getRelationships(getUserId(currentUsername), usernames, List.of())
+                .forEach(relationship -> result.put(relationship.getUsername(), relationship.isFollowing()));
+        return result;
+    }
+
+    /**
+     * Отношения текущего пользователя с пачкой пользователей: пользователи находятся одним запросом,
+     * флаги берутся из FollowGraphIndex. Неизвестные username и id пропускаются.
+     */
+    public List<RelationshipDTO> getRelationships(Long currentUserId, Collection<String> usernames, Collection<Long> ids) {
+        if (usernames.isEmpty() && ids.isEmpty()) {
+            return List.of();
+        }
+        return userRepository.findAvatarsByUsernamesOrIds(usernames, ids).stream()
+                .map(user -> new RelationshipDTO(
+                        user.getId(),
+                        user.getUsername(),
+                        followGraphIndex.isSubscribed(currentUserId, user.getId()),
+                        followGraphIndex.isSubscribed(user.getId(), currentUserId),
+                        followGraphIndex.isCloseFriend(currentUserId, user.getId())))
+                .toList();
     }
 
     public void addCloseFriend(String username, String friendUsername) {
-        User user = userRepository.findByUsername(username)
+        User user = userCache.findByUsername(username)
+                .map(summary -> userRepository.getReferenceById(summary.id()))
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
-        User friend = userRepository.findByUsername(friendUsername)
+        User friend = userCache.findByUsername(friendUsername)
+                .map(summary -> userRepository.getReferenceById(summary.id()))
                 .orElseThrow(() -> new UsernameNotFoundException("Friend not found"));
 
         user.getCloseFriends().add(friend);
         userRepository.save(user);
+        followGraphIndex.onCloseFriendAdded(user.getId(), friend.getId());
     }
 
     public void removeCloseFriend(String username, String friendUsername) {
-        User user = userRepository.findByUsername(username)
+        User user = userCache.findByUsername(username)
+                .map(summary -> userRepository.getReferenceById(summary.id()))
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
-        User friend = userRepository.findByUsername(friendUsername)
+        User friend = userCache.findByUsername(friendUsername)
+                .map(summary -> userRepository.getReferenceById(summary.id()))
                 .orElseThrow(() -> new UsernameNotFoundException("Friend not found"));
 
         user.getCloseFriends().remove(friend);
         userRepository.save(user);
+        followGraphIndex.onCloseFriendRemoved(user.getId(), friend.getId());
     }
 
     public Set<String> getCloseFriends(String username) {
-        User currentUser = userRepository.findByUsername(username)
+        Long userId = userCache.findByUsername(username)
+                .map(UserCache.UserSummary::id)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
-        Set<String> friendUsernames = currentUser.getCloseFriends()
+        long[] friendIds = followGraphIndex.getCloseFriends(userId);
+        if (friendIds.length == 0) {
+            return new HashSet<>();
+        }
+        return userRepository.findAvatarsByIds(Arrays.stream(friendIds).boxed().toList())
                 .stream()
-                .map(User::getUsername) // Извлекаем имя пользователя
+                .map(UserAvatarView::getUsername)
                 .collect(Collectors.toSet());
-        return friendUsernames;
     }
 
     public Boolean getUserContainInFriends(String username, String friendUsername) {
-        User user = userRepository.findByUsername(username)
+        Long userId = userCache.findByUsername(username)
+                .map(UserCache.UserSummary::id)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
-
-        Set<UserDTO> friends = user.getCloseFriends()
-                .stream()
-                .map(userFacade::userToUserDTO)
-                .collect(Collectors.toSet());
-        User friend = userRepository.findByUsername(friendUsername)
+        Long friendId = userCache.findByUsername(friendUsername)
+                .map(UserCache.UserSummary::id)
                 .orElseThrow(() -> new UsernameNotFoundException("Friend not found"));
-        return friends.contains(userFacade.userToUserDTO(friend));
+        return followGraphIndex.isCloseFriend(userId, friendId);
     }
 
     public String getAvatarUrl(String s) {
-        return userRepository.findAvatarUrlByUsername(s).orElse("assets/placeholder.jpg");
+        return userCache.findByUsername(s)
+                .map(UserCache.UserSummary::avatarUrl)
+                .orElse("assets/placeholder.jpg");
 
     }
 }
@@ -0,0 +1,82 @@
+package com.example.instaKing.services;
+
+import com.example.instaKing.models.UserStats;
+import com.example.instaKing.repositories.UserStatsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Счетчики профиля в user_stats. Инкременты выполняются в транзакции вызывающего метода,
+ * поэтому счетчик меняется вместе с подпиской, постом или историей.
+ */
+@Slf4j
+@Service
+public class UserStatsService {
+
+    // Пересчет по исходным таблицам, обновляются только разошедшиеся строки
+    public static final String RECONCILE =
+            "INSERT INTO user_stats (user_id, followers, following, posts, stories) " +
+            "SELECT u.id, " +
+            "(SELECT count(*) FROM user_following uf WHERE uf.follower_id = u.id), " +
+            "(SELECT count(*) FROM user_following uf WHERE uf.following_id = u.id), " +
+            "(SELECT count(*) FROM post p WHERE p.user_id = u.id), " +
+            "(SELECT count(*) FROM story s WHERE s.user_id = u.id) " +
+            "FROM users u " +
+            "ON CONFLICT (user_id) DO UPDATE SET followers = EXCLUDED.followers, following = EXCLUDED.following, " +
+            "posts = EXCLUDED.posts, stories = EXCLUDED.stories " +
+            "WHERE user_stats.followers <> EXCLUDED.followers OR user_stats.following <> EXCLUDED.following " +
+            "OR user_stats.posts <> EXCLUDED.posts OR user_stats.stories <> EXCLUDED.stories";
+
+    private final UserStatsRepository userStatsRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserStatsService(UserStatsRepository userStatsRepository, JdbcTemplate jdbcTemplate) {
+        this.userStatsRepository = userStatsRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public UserStats getStats(Long userId) {
+        return userStatsRepository.findById(userId).orElseGet(() -> {
+            UserStats empty = new UserStats();
+            empty.setUserId(userId);
+            return empty;
+        });
+    }
+
+    public void onFollow(Long subscriberId, Long authorId) {
+        userStatsRepository.increment(authorId, 1, 0, 0, 0);
+        userStatsRepository.increment(subscriberId, 0, 1, 0, 0);
+    }
+
+    public void onUnfollow(Long subscriberId, Long authorId) {
+        userStatsRepository.increment(authorId, -1, 0, 0, 0);
+        userStatsRepository.increment(subscriberId, 0, -1, 0, 0);
+    }
+
+    public void onPostCreated(Long userId) {
+        userStatsRepository.increment(userId, 0, 0, 1, 0);
+    }
+
+    public void onPostDeleted(Long userId) {
+        userStatsRepository.increment(userId, 0, 0, -1, 0);
+    }
+
+    public void onStoryCreated(Long userId) {
+        userStatsRepository.increment(userId, 0, 0, 0, 1);
+    }
+
+    public void onStoryDeleted(Long userId) {
+        userStatsRepository.increment(userId, 0, 0, 0, -1);
+    }
+
+    @Scheduled(fixedDelayString = "${app.stats.reconcile-interval-ms:21600000}",
+            initialDelayString = "${app.stats.reconcile-interval-ms:21600000}")
+    public void reconcile() {
+        int repaired = jdbcTemplate.update(RECONCILE);
+        if (repaired > 0) {
+            log.info("User stats: repaired {} rows", repaired);
+        }
+    }
+}
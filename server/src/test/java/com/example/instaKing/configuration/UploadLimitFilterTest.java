@@ -0,0 +1,78 @@
+package com.example.instaKing.configuration;
+
+import com.example.instaKing.security.JWTAuthenticationEntryPoint;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadLimitFilterTest {
+
+    private final UploadLimitFilter filter = new UploadLimitFilter(1, new JWTAuthenticationEntryPoint());
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static MockHttpServletRequest upload() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/story/create");
+        request.setContentType("multipart/form-data; boundary=x");
+        return request;
+    }
+
+    private static void authenticate() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("alice", null, List.of()));
+    }
+
+    @Test
+    void anonymousUploadIsRejectedWithoutPermit() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(upload(), response, new MockFilterChain());
+        assertEquals(401, response.getStatus());
+
+        // разрешение не занято: следующая авторизованная загрузка проходит
+        authenticate();
+        MockHttpServletResponse next = new MockHttpServletResponse();
+        filter.doFilter(upload(), next, new MockFilterChain());
+        assertEquals(200, next.getStatus());
+    }
+
+    @Test
+    void uploadsOverLimitAreRejected() throws Exception {
+        authenticate();
+        AtomicInteger status = new AtomicInteger();
+        // пока первая загрузка идет, вторая получает 503
+        FilterChain slowUpload = (request, response) -> {
+            MockHttpServletResponse second = new MockHttpServletResponse();
+            filter.doFilter(upload(), second, new MockFilterChain());
+            status.set(second.getStatus());
+        };
+        filter.doFilter(upload(), new MockHttpServletResponse(), slowUpload);
+        assertEquals(503, status.get());
+
+        // после завершения разрешение возвращено
+        MockHttpServletResponse after = new MockHttpServletResponse();
+        filter.doFilter(upload(), after, new MockFilterChain());
+        assertEquals(200, after.getStatus());
+    }
+
+    @Test
+    void nonMultipartRequestsAreNotLimited() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/post/create");
+        request.setContentType("application/json");
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        assertNotNull(chain.getRequest());
+    }
+}
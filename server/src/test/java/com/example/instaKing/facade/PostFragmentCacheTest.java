@@ -0,0 +1,89 @@
+package com.example.instaKing.facade;
+
+import com.example.instaKing.dto.PostDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostFragmentCacheTest {
+
+    private final PostFragmentCache cache = new PostFragmentCache(new ObjectMapper(), 100, 300);
+
+    private static PostDTO post(long id, String title) {
+        PostDTO postDTO = new PostDTO();
+        postDTO.setId(id);
+        postDTO.setTitle(title);
+        postDTO.setLikedByMe(true);
+        postDTO.setFavorited(true);
+        return postDTO;
+    }
+
+    @Test
+    void fragmentOmitsViewerFieldsAndIsOpen() {
+        String json = cache.serialize(post(1L, "first")).getValue();
+
+        assertTrue(json.startsWith("{"));
+        assertFalse(json.endsWith("}"), "закрывающую скобку дописывает PostJson");
+        assertTrue(json.contains("\"title\":\"first\""));
+        assertFalse(json.contains("likedByMe"));
+        assertFalse(json.contains("favorited"));
+        assertFalse(json.contains("addedAt"));
+    }
+
+    @Test
+    void putIsReturnedByGetAll() {
+        cache.put(post(1L, "first"), cache.version());
+
+        Map<Long, ?> present = cache.getAll(List.of(1L, 2L));
+        assertEquals(1, present.size());
+        assertEquals(cache.serialize(post(1L, "first")), present.get(1L));
+    }
+
+    @Test
+    void invalidateBumpsVersionAndEvicts() {
+        cache.put(post(1L, "first"), cache.version());
+        long before = cache.version();
+
+        // без транзакции инвалидация выполняется сразу
+        cache.invalidate(1L);
+
+        assertTrue(cache.version() > before);
+        assertTrue(cache.getAll(List.of(1L)).isEmpty());
+    }
+
+    @Test
+    void fragmentBuiltBeforeInvalidationIsNotCached() {
+        long builtAt = cache.version();
+        cache.invalidate(1L);
+
+        // собранный по старым данным фрагмент отдается вызывающему, но в кэш не попадает
+        assertNotNull(cache.put(post(1L, "stale"), builtAt));
+        assertTrue(cache.getAll(List.of(1L)).isEmpty());
+
+        cache.put(post(1L, "fresh"), cache.version());
+        assertEquals(cache.serialize(post(1L, "fresh")), cache.getAll(List.of(1L)).get(1L));
+    }
+
+    @Test
+    void invalidationOfOtherPostDoesNotAffectPut() {
+        long builtAt = cache.version();
+        cache.invalidate(2L);
+
+        cache.put(post(1L, "first"), builtAt);
+        assertEquals(1, cache.getAll(List.of(1L)).size());
+    }
+
+    @Test
+    void serializeAndPeekDoNotPopulateCache() {
+        cache.serialize(post(1L, "first"));
+        assertTrue(cache.peekAll(List.of(1L)).isEmpty());
+        assertTrue(cache.getAll(List.of(1L)).isEmpty());
+
+        cache.put(post(1L, "first"), cache.version());
+        assertEquals(1, cache.peekAll(List.of(1L, 2L)).size());
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.instaKing.payload.request;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageCursorTest {
+
+    @Test
+    void roundTrip() {
+        PageCursor cursor = new PageCursor(LocalDateTime.of(2024, 3, 1, 12, 30, 15, 123_456_000), 42L);
+        assertEquals(cursor, PageCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void wholeSeconds() {
+        // LocalDateTime.toString опускает нулевые секунды
+        PageCursor cursor = new PageCursor(LocalDateTime.of(2024, 3, 1, 12, 30), 7L);
+        assertEquals(cursor, PageCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void emptyAndInvalid() {
+        assertNull(PageCursor.decode(null));
+        assertNull(PageCursor.decode(" "));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("not a cursor"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("bm8tc2VwYXJhdG9y"));
+    }
+
+    @Test
+    void pageSizeIsClamped() {
+        assertEquals(1, PageCursor.pageSize(0));
+        assertEquals(20, PageCursor.pageSize(20));
+        assertEquals(PageCursor.MAX_PAGE_SIZE, PageCursor.pageSize(10_000));
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.instaKing.payload.request;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchCursorTest {
+
+    @Test
+    void roundTrip() {
+        SearchCursor cursor = new SearchCursor(3.14159f, Long.MAX_VALUE);
+        assertEquals(cursor, SearchCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void keepsExactScore() {
+        // score сравнивается в Lucene побитово, текстовое округление потеряло бы страницу
+        float score = Math.nextUp(1.0f);
+        assertEquals(Float.floatToIntBits(score),
+                Float.floatToIntBits(SearchCursor.decode(new SearchCursor(score, 1).encode()).score()));
+        SearchCursor negative = new SearchCursor(-0.5f, 9);
+        assertEquals(negative, SearchCursor.decode(negative.encode()));
+    }
+
+    @Test
+    void emptyAndInvalid() {
+        assertNull(SearchCursor.decode(null));
+        assertNull(SearchCursor.decode(""));
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode("%%%"));
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode("MTIz"));
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.instaKing.security;
+
+import com.example.instaKing.models.enums.ERole;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.MethodParameter;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.security.Principal;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CurrentUserArgumentResolverTest {
+
+    private final CurrentUserArgumentResolver resolver = new CurrentUserArgumentResolver();
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void supportsOnlyCurrentUserParameters() throws Exception {
+        assertTrue(resolver.supportsParameter(parameter(0)));
+        assertFalse(resolver.supportsParameter(parameter(1)));
+    }
+
+    @Test
+    void resolvesPrincipalFromSecurityContext() throws Exception {
+        CurrentUser user = new CurrentUser(3L, "bob", Set.of(ERole.ROLE_USER));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.authorities()));
+
+        assertSame(user, resolver.resolveArgument(parameter(0), null, null, null));
+    }
+
+    @Test
+    void anonymousRequestResolvesToNull() throws Exception {
+        assertNull(resolver.resolveArgument(parameter(0), null, null, null));
+
+        SecurityContextHolder.getContext().setAuthentication(new AnonymousAuthenticationToken(
+                "key", "anonymousUser", AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")));
+        assertNull(resolver.resolveArgument(parameter(0), null, null, null));
+    }
+
+    private static MethodParameter parameter(int index) throws NoSuchMethodException {
+        return new MethodParameter(Handler.class.getDeclaredMethod("handle", CurrentUser.class, Principal.class), index);
+    }
+
+    private static final class Handler {
+        @SuppressWarnings("unused")
+        void handle(CurrentUser currentUser, Principal principal) {
+        }
+    }
+}
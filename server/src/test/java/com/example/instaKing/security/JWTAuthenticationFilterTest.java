@@ -0,0 +1,108 @@
+package com.example.instaKing.security;
+
+import com.example.instaKing.models.User;
+import com.example.instaKing.models.enums.ERole;
+import com.example.instaKing.services.CustomUserDetailsService;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JWTAuthenticationFilterTest {
+
+    private final JWTTokenProvider tokenProvider = new JWTTokenProvider(100);
+    private final CustomUserDetailsService userDetailsService = mock(CustomUserDetailsService.class);
+    private final JWTAuthenticationFilter filter = new JWTAuthenticationFilter(tokenProvider, userDetailsService);
+    private Authentication alice;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User(7L, "alice", "alice@example.com", null, List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        alice = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void accessTokenAuthenticatesFromClaims() throws Exception {
+        MockFilterChain chain = run(tokenProvider.generateAccessToken(alice));
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(authentication);
+        assertEquals(new CurrentUser(7L, "alice", Set.of(ERole.ROLE_USER)), authentication.getPrincipal());
+        assertEquals("alice", authentication.getName());
+        assertEquals(List.of(new SimpleGrantedAuthority("ROLE_USER")), List.copyOf(authentication.getAuthorities()));
+        // пользователь собран из claims, без БД
+        verifyNoInteractions(userDetailsService);
+        assertNotNull(chain.getRequest());
+    }
+
+    @Test
+    void legacyTokenFallsBackToUserCache() throws Exception {
+        String legacy = Jwts.builder()
+                .subject("7")
+                .claim("userId", 7L)
+                .claim("tokenType", "access")
+                .expiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(SecurityConstants.ACCESS_SECRET)
+                .compact();
+        CurrentUser loaded = new CurrentUser(7L, "alice", Set.of(ERole.ROLE_USER));
+        when(userDetailsService.loadCurrentUserById(7L)).thenReturn(loaded);
+
+        run(legacy);
+
+        assertEquals(loaded, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+    }
+
+    @Test
+    void refreshTokenDoesNotAuthenticate() throws Exception {
+        // refresh подписан другим ключом и для запросов не годится
+        MockFilterChain chain = run(tokenProvider.generateRefreshToken(alice));
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        assertNotNull(chain.getRequest());
+    }
+
+    @Test
+    void tamperedTokenDoesNotAuthenticate() throws Exception {
+        String token = tokenProvider.generateAccessToken(alice);
+        MockFilterChain chain = run(token.substring(0, token.length() - 2) + "xx");
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        assertNotNull(chain.getRequest());
+    }
+
+    @Test
+    void requestWithoutTokenPassesThrough() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/post/feed"), new MockHttpServletResponse(), chain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        assertNotNull(chain.getRequest());
+    }
+
+    private MockFilterChain run(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/post/feed");
+        request.addHeader(SecurityConstants.HEADER_STRING, SecurityConstants.TOKEN_PREFIX + token);
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        return chain;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.instaKing.security;
+
+import com.example.instaKing.models.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость аутентификации запроса по access-токену.
+ * legacyThreeParses - как было: validateToken, getTokenType и getUserIdFromToken, каждый со своим парсером;
+ * singleParse - один разбор готовым парсером (кэш выключен); cachedParse - повтор уже проверенного токена.
+ * <p>
+ * Запуск: mvn test-compile, затем
+ * java -cp target/test-classes:target/classes:&lt;test classpath&gt; org.openjdk.jmh.Main JwtAuthBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthBenchmark {
+
+    private JWTTokenProvider uncached;
+    private JWTTokenProvider cached;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        uncached = new JWTTokenProvider(0);
+        cached = new JWTTokenProvider(10_000);
+        User user = new User(1L, "alice", "alice@example.com", null, List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        token = cached.generateAccessToken(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    @Benchmark
+    public CurrentUser legacyThreeParses() {
+        legacyClaims();
+        if (!"access".equals(String.valueOf(legacyClaims().get("tokenType")))) {
+            return null;
+        }
+        Long id = Long.parseLong(String.valueOf(legacyClaims().get("userId")));
+        return new CurrentUser(id, null, null);
+    }
+
+    @Benchmark
+    public CurrentUser singleParse() {
+        return uncached.getCurrentUser(uncached.parseToken(token, false, SecurityConstants.ACCESS_SECRET));
+    }
+
+    @Benchmark
+    public CurrentUser cachedParse() {
+        return cached.getCurrentUser(cached.parseToken(token, false, SecurityConstants.ACCESS_SECRET));
+    }
+
+    private Claims legacyClaims() {
+        return Jwts.parser()
+                .verifyWith(SecurityConstants.ACCESS_SECRET)
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.instaKing.services;
+
+import com.example.instaKing.models.Story;
+import com.example.instaKing.models.User;
+import com.example.instaKing.services.ActiveStoryIndex.ActiveStory;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class ActiveStoryIndexTest {
+
+    private final ActiveStoryIndex index = new ActiveStoryIndex(mock(JdbcTemplate.class));
+    private final LocalDateTime now = LocalDateTime.now();
+
+    @Test
+    void createdStoriesAreOrderedByCreation() {
+        index.onStoryCreated(story(2, 1, now.minusHours(1), now.plusHours(23)));
+        index.onStoryCreated(story(1, 1, now.minusHours(2), now.plusHours(22)));
+        index.onStoryCreated(story(3, 2, now.minusHours(3), now.plusHours(21)));
+
+        assertEquals(List.of(1L, 2L), ids(index.getActiveStories(1)));
+        assertEquals(List.of(3L), ids(index.getActiveStories(2)));
+        assertTrue(index.hasActiveStories(1));
+        assertFalse(index.hasActiveStories(3));
+    }
+
+    @Test
+    void expiredStoriesAreHiddenBeforeEviction() {
+        index.onStoryCreated(story(1, 1, now.minusHours(25), now.minusHours(1)));
+        index.onStoryCreated(story(2, 1, now.minusHours(1), now.plusHours(23)));
+
+        assertEquals(List.of(2L), ids(index.getActiveStories(1)));
+        assertTrue(index.hasActiveStories(1));
+    }
+
+    @Test
+    void evictExpiredRemovesOnlyDueStories() {
+        index.onStoryCreated(story(1, 1, now.minusHours(25), now.minusSeconds(1)));
+        index.onStoryCreated(story(2, 2, now.minusHours(25), now.minusSeconds(1)));
+        index.onStoryCreated(story(3, 2, now.minusHours(1), now.plusHours(23)));
+
+        index.evictExpired();
+
+        assertFalse(index.hasActiveStories(1));
+        assertEquals(List.of(3L), ids(index.getActiveStories(2)));
+    }
+
+    @Test
+    void deletedStoryIsRemoved() {
+        index.onStoryCreated(story(1, 1, now.minusHours(2), now.plusHours(22)));
+        index.onStoryCreated(story(2, 1, now.minusHours(1), now.plusHours(23)));
+
+        index.onStoryDeleted(1, 1);
+        assertEquals(List.of(2L), ids(index.getActiveStories(1)));
+        index.onStoryDeleted(1, 2);
+        assertFalse(index.hasActiveStories(1));
+        // удаление, пришедшее после вытеснения, ничего не ломает
+        index.onStoryDeleted(1, 2);
+        assertEquals(List.of(), index.getActiveStories(1));
+    }
+
+    private static Story story(long id, long userId, LocalDateTime createdAt, LocalDateTime expiresAt) {
+        User user = new User();
+        user.setId(userId);
+        Story story = new Story();
+        story.setId(id);
+        story.setUser(user);
+        story.setCreatedAt(createdAt);
+        story.setExpiresAt(expiresAt);
+        return story;
+    }
+
+    private static List<Long> ids(List<ActiveStory> stories) {
+        return stories.stream().map(ActiveStory::id).toList();
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.instaKing.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FollowGraphIndexTest {
+
+    @Test
+    void insertKeepsOrderAndSkipsDuplicates() {
+        long[] ids = FollowGraphIndex.insert(null, 5);
+        ids = FollowGraphIndex.insert(ids, 1);
+        ids = FollowGraphIndex.insert(ids, 9);
+        ids = FollowGraphIndex.insert(ids, 5);
+        ids = FollowGraphIndex.insert(ids, 7);
+        assertArrayEquals(new long[]{1, 5, 7, 9}, ids);
+    }
+
+    @Test
+    void insertDoesNotModifyInput() {
+        long[] ids = {1, 3};
+        FollowGraphIndex.insert(ids, 2);
+        assertArrayEquals(new long[]{1, 3}, ids);
+    }
+
+    @Test
+    void removeMiddleAndMissing() {
+        long[] ids = {1, 5, 7, 9};
+        assertArrayEquals(new long[]{1, 7, 9}, FollowGraphIndex.remove(ids, 5));
+        assertArrayEquals(new long[]{1, 5, 7, 9}, FollowGraphIndex.remove(ids, 6));
+        assertArrayEquals(new long[]{1, 5, 7, 9}, ids);
+    }
+
+    @Test
+    void removeLastElement() {
+        // null удаляет ключ из map в compute
+        assertNull(FollowGraphIndex.remove(new long[]{4}, 4));
+    }
+
+    @Test
+    void intersect() {
+        assertArrayEquals(new long[]{3, 8}, FollowGraphIndex.intersect(new long[]{1, 3, 5, 8}, new long[]{2, 3, 8, 10}));
+        assertArrayEquals(new long[0], FollowGraphIndex.intersect(new long[]{1, 2}, new long[]{3, 4}));
+        assertArrayEquals(new long[0], FollowGraphIndex.intersect(new long[0], new long[]{1}));
+        assertArrayEquals(new long[]{1, 2}, FollowGraphIndex.intersect(new long[]{1, 2}, new long[]{1, 2}));
+    }
+}
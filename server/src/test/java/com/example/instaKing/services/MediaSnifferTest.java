@@ -0,0 +1,58 @@
+package com.example.instaKing.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MediaSnifferTest {
+
+    @Test
+    void images() {
+        assertEquals(Optional.of("jpg"), MediaSniffer.detect(bytes(0xFF, 0xD8, 0xFF, 0xE0, 0, 0x10)));
+        assertEquals(Optional.of("png"), MediaSniffer.detect(bytes(0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0)));
+        assertEquals(Optional.of("gif"), MediaSniffer.detect(ascii("GIF89a")));
+        assertEquals(Optional.of("webp"), MediaSniffer.detect(ascii("RIFF\0\0\0\0WEBPVP8 ")));
+    }
+
+    @Test
+    void video() {
+        assertEquals(Optional.of("mp4"), MediaSniffer.detect(ascii("\0\0\0\u0018ftypisom\0\0\0\0")));
+        assertEquals(Optional.of("mov"), MediaSniffer.detect(ascii("\0\0\0\u0014ftypqt  \0\0\0\0")));
+        assertEquals(Optional.of("webm"), MediaSniffer.detect(bytes(0x1A, 0x45, 0xDF, 0xA3, 0x9F)));
+    }
+
+    @Test
+    void isoImagesAreNotVideo() {
+        // HEIC и AVIF в том же контейнере ftyp
+        assertEquals(Optional.empty(), MediaSniffer.detect(ascii("\0\0\0\u0018ftypheic\0\0\0\0")));
+        assertEquals(Optional.empty(), MediaSniffer.detect(ascii("\0\0\0\u001cftypavif\0\0\0\0")));
+        assertEquals(Optional.empty(), MediaSniffer.detect(ascii("\0\0\0\u0018ftypmif1\0\0\0\0")));
+        assertEquals(Optional.empty(), MediaSniffer.detect(ascii("\0\0\0\u0018ftyp")));
+        assertEquals(Optional.of("mp4"), MediaSniffer.detect(ascii("\0\0\0\u001cftypmp42\0\0\0\0")));
+    }
+
+    @Test
+    void unknownOrShort() {
+        assertEquals(Optional.empty(), MediaSniffer.detect(ascii("<?xml version")));
+        assertEquals(Optional.empty(), MediaSniffer.detect(new byte[0]));
+        // RIFF без WEBP (например, wav) и обрезанный заголовок
+        assertEquals(Optional.empty(), MediaSniffer.detect(ascii("RIFF\0\0\0\0WAVE")));
+        assertEquals(Optional.empty(), MediaSniffer.detect(ascii("RIFF\0\0")));
+        assertEquals(Optional.empty(), MediaSniffer.detect(bytes(0xFF, 0xD8)));
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
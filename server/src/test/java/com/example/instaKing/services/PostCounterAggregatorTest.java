@@ -0,0 +1,100 @@
+package com.example.instaKing.services;
+
+import com.example.instaKing.services.PostCounterAggregator.Counter;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PostCounterAggregatorTest {
+
+    private static final String UPDATE_LIKES = "UPDATE post SET likes = likes + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final PostCounterAggregator aggregator = new PostCounterAggregator(jdbcTemplate, transactionTemplate());
+
+    // без активной синхронизации AfterCommit выполняет действие сразу
+    private static TransactionTemplate transactionTemplate() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        return new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void pendingSumsUnflushedDeltas() {
+        aggregator.add(Counter.LIKES, 1L, 1);
+        aggregator.add(Counter.LIKES, 1L, 1);
+        aggregator.add(Counter.LIKES, 1L, -1);
+        aggregator.add(Counter.FAVORITES, 1L, 3);
+        assertEquals(1, aggregator.pending(Counter.LIKES, 1L));
+        assertEquals(3, aggregator.pending(Counter.FAVORITES, 1L));
+        assertEquals(0, aggregator.pending(Counter.LIKES, 2L));
+    }
+
+    @Test
+    void generationIsWrittenOnSecondFlush() {
+        aggregator.add(Counter.LIKES, 7L, 5);
+
+        // первый тик: current уходит в retired, в БД ничего не пишется, pending его еще видит
+        aggregator.flush();
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+        assertEquals(5, aggregator.pending(Counter.LIKES, 7L));
+
+        aggregator.flush();
+        verify(jdbcTemplate).batchUpdate(eq(UPDATE_LIKES), argThat((List<Object[]> batch) ->
+                batch.size() == 1 && batch.get(0)[0].equals(5L) && batch.get(0)[1].equals(7L)));
+        assertEquals(0, aggregator.pending(Counter.LIKES, 7L));
+    }
+
+    @Test
+    void failedWriteStaysPendingAndIsRetried() {
+        when(jdbcTemplate.batchUpdate(eq(UPDATE_LIKES), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("db down"))
+                .thenReturn(new int[]{1});
+        aggregator.add(Counter.LIKES, 7L, 5);
+        aggregator.flush();
+        aggregator.flush();
+        // запись не прошла: дельта по-прежнему учитывается ровно один раз
+        assertEquals(5, aggregator.pending(Counter.LIKES, 7L));
+
+        aggregator.add(Counter.LIKES, 7L, 2);
+        assertEquals(7, aggregator.pending(Counter.LIKES, 7L));
+
+        // повтор пишет только старое поколение, новое сдвигается в retired
+        aggregator.flush();
+        assertEquals(2, aggregator.pending(Counter.LIKES, 7L));
+        verify(jdbcTemplate, times(2)).batchUpdate(eq(UPDATE_LIKES), argThat((List<Object[]> batch) ->
+                batch.size() == 1 && batch.get(0)[0].equals(5L)));
+
+        aggregator.flush();
+        assertEquals(0, aggregator.pending(Counter.LIKES, 7L));
+    }
+
+    @Test
+    void zeroDeltasAreNotWritten() {
+        aggregator.add(Counter.LIKES, 7L, 1);
+        aggregator.add(Counter.LIKES, 7L, -1);
+        aggregator.flushAll();
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void flushAllWritesEverything() {
+        aggregator.add(Counter.LIKES, 1L, 2);
+        aggregator.flush();
+        aggregator.add(Counter.FAVORITES, 2L, 1);
+        aggregator.flushAll();
+        assertEquals(0, aggregator.pending(Counter.LIKES, 1L));
+        assertEquals(0, aggregator.pending(Counter.FAVORITES, 2L));
+        verify(jdbcTemplate).batchUpdate(eq(UPDATE_LIKES), anyList());
+        verify(jdbcTemplate).batchUpdate(eq("UPDATE post SET favorites = favorites + ? WHERE id = ?"), anyList());
+    }
+}
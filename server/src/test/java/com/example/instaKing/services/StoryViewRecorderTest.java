@@ -0,0 +1,142 @@
+package com.example.instaKing.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class StoryViewRecorderTest {
+
+    private static final long STORY = 10L;
+    private static final long MISSING_STORY = 11L;
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private StoryViewRecorder recorder;
+
+    @BeforeEach
+    void setUp() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        recorder = new StoryViewRecorder(jdbcTemplate, new TransactionTemplate(transactionManager), 100);
+
+        // в БД у истории STORY один зритель (1), истории MISSING_STORY нет
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            long storyId = invocation.getArgument(2);
+            if (storyId == STORY) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong(2)).thenReturn(1L);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT s.id, v.user_id"), any(RowCallbackHandler.class), anyLong());
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO story_view"), anyList()))
+                .thenAnswer(invocation -> {
+                    int[] inserted = new int[invocation.<List<?>>getArgument(1).size()];
+                    java.util.Arrays.fill(inserted, 1);
+                    return inserted;
+                });
+    }
+
+    @Test
+    void repeatedViewsAreDeduplicated() {
+        assertEquals(Optional.of(false), recorder.record(STORY, 1L));
+        assertEquals(Optional.of(true), recorder.record(STORY, 2L));
+        assertEquals(Optional.of(false), recorder.record(STORY, 2L));
+
+        assertTrue(recorder.hasViewed(STORY, 2L));
+        assertFalse(recorder.hasViewed(STORY, 3L));
+        assertEquals(2, recorder.countViewers(STORY));
+        // множество зрителей загружено один раз
+        verify(jdbcTemplate, times(1)).query(startsWith("SELECT s.id, v.user_id"), any(RowCallbackHandler.class), anyLong());
+    }
+
+    @Test
+    void missingStoryIsNotRecorded() {
+        assertEquals(Optional.empty(), recorder.record(MISSING_STORY, 1L));
+        assertFalse(recorder.hasViewed(MISSING_STORY, 1L));
+        recorder.flush();
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void flushWritesNewViewsAndIncrementsCounters() {
+        recorder.record(STORY, 2L);
+        recorder.record(STORY, 3L);
+        recorder.record(STORY, 3L);
+
+        recorder.flush();
+
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO story_view"),
+                argThat((List<Object[]> batch) -> batch.size() == 2));
+        verify(jdbcTemplate).batchUpdate(eq("UPDATE story SET views = views + ? WHERE id = ?"),
+                argThat((List<Object[]> batch) -> batch.size() == 1
+                        && batch.get(0)[0].equals(2) && batch.get(0)[1].equals(STORY)));
+
+        // очередь пуста, повторный тик ничего не пишет
+        recorder.flush();
+        verify(jdbcTemplate, times(1)).batchUpdate(startsWith("INSERT INTO story_view"), anyList());
+    }
+
+    @Test
+    void failedFlushIsRetried() {
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO story_view"), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("db down"))
+                .thenReturn(new int[]{1});
+        recorder.record(STORY, 2L);
+
+        recorder.flush();
+        recorder.flush();
+
+        verify(jdbcTemplate, times(2)).batchUpdate(startsWith("INSERT INTO story_view"),
+                argThat((List<Object[]> batch) -> batch.size() == 1 && batch.get(0)[1].equals(2L)));
+        verify(jdbcTemplate, times(1)).batchUpdate(startsWith("UPDATE story SET views"), anyList());
+    }
+
+    @Test
+    void deletedStoryIsReloaded() {
+        recorder.record(STORY, 2L);
+        recorder.onStoryDeleted(STORY);
+        // без транзакции инвалидация сразу; заново из БД, где есть только зритель 1
+        assertFalse(recorder.hasViewed(STORY, 2L));
+        assertTrue(recorder.hasViewed(STORY, 1L));
+    }
+
+    @Test
+    void viewedAmongUsesWarmBitmapsAndBatchesTheRest() {
+        recorder.record(STORY, 2L);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getLong(1)).thenReturn(20L);
+            handler.processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT story_id FROM story_view"), any(RowCallbackHandler.class), any(Object[].class));
+
+        assertEquals(Set.of(STORY, 20L), recorder.viewedAmong(List.of(STORY, 20L, 21L), 2L));
+        // холодные истории одним IN-запросом, теплая из битмапа
+        verify(jdbcTemplate, times(1)).query(eq("SELECT story_id FROM story_view WHERE user_id = ? AND story_id IN (?,?)"),
+                any(RowCallbackHandler.class), eq(new Object[]{2L, 20L, 21L}));
+    }
+
+    @Test
+    void viewedAmongSkipsQueryWhenAllBitmapsAreWarm() {
+        recorder.record(STORY, 2L);
+        assertEquals(Set.of(STORY), recorder.viewedAmong(List.of(STORY), 2L));
+        assertEquals(Set.of(), recorder.viewedAmong(List.of(STORY), 3L));
+        verify(jdbcTemplate, never()).query(startsWith("SELECT story_id FROM story_view"), any(RowCallbackHandler.class), any(Object[].class));
+    }
+}
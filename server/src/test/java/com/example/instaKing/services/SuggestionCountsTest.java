@@ -0,0 +1,60 @@
+package com.example.instaKing.services;
+
+import com.example.instaKing.services.SuggestionService.Counts;
+import com.example.instaKing.services.SuggestionService.Suggestions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SuggestionCountsTest {
+
+    @Test
+    void ofCountsRepeatsWithinLength() {
+        long[] candidates = {7, 3, 7, 1, 3, 7, 99, 99};
+        Counts counts = Counts.of(candidates, 6);
+        assertEquals(3, counts.size());
+        assertArrayEquals(new long[]{1, 3, 7}, Arrays.copyOf(counts.ids(), counts.size()));
+        assertArrayEquals(new int[]{1, 2, 3}, Arrays.copyOf(counts.counts(), counts.size()));
+    }
+
+    @Test
+    void ofEmpty() {
+        assertEquals(0, Counts.of(new long[0], 0).size());
+    }
+
+    @Test
+    void mergeSumsCommonIds() {
+        Counts left = Counts.of(new long[]{1, 4, 4, 6}, 4);
+        Counts right = Counts.of(new long[]{2, 4, 6, 6, 8}, 5);
+        Counts merged = left.merge(right);
+        assertEquals(5, merged.size());
+        assertArrayEquals(new long[]{1, 2, 4, 6, 8}, Arrays.copyOf(merged.ids(), merged.size()));
+        assertArrayEquals(new int[]{1, 1, 3, 3, 1}, Arrays.copyOf(merged.counts(), merged.size()));
+    }
+
+    @Test
+    void mergeWithEmpty() {
+        Counts counts = Counts.of(new long[]{5, 5}, 2);
+        Counts empty = Counts.of(new long[0], 0);
+        assertArrayEquals(new int[]{2}, Arrays.copyOf(counts.merge(empty).counts(), 1));
+        assertArrayEquals(new long[]{5}, Arrays.copyOf(empty.merge(counts).ids(), 1));
+    }
+
+    @Test
+    void topOrdersByCountThenId() {
+        Counts counts = Counts.of(new long[]{10, 10, 20, 30, 30, 30, 40, 40, 50}, 9);
+        Suggestions top = counts.top(3);
+        assertArrayEquals(new long[]{30, 10, 40}, top.userIds());
+        assertArrayEquals(new int[]{3, 2, 2}, top.mutualCounts());
+    }
+
+    @Test
+    void topLimitLargerThanSize() {
+        Suggestions top = Counts.of(new long[]{2, 1, 2}, 3).top(10);
+        assertArrayEquals(new long[]{2, 1}, top.userIds());
+        assertArrayEquals(new int[]{2, 1}, top.mutualCounts());
+        assertEquals(0, Counts.of(new long[]{1}, 1).top(0).userIds().length);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.instaKing.services;
+
+import com.example.instaKing.services.TimelineService.Timeline;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimelineTest {
+
+    @Test
+    void pushKeepsDescendingOrderWithoutDuplicates() {
+        Timeline timeline = new Timeline(List.of(50L, 30L, 10L), 10);
+        timeline.push(40);
+        timeline.push(60);
+        timeline.push(5);
+        timeline.push(30);
+        assertEquals(List.of(60L, 50L, 40L, 30L, 10L, 5L), timeline.page(Long.MAX_VALUE, 10));
+    }
+
+    @Test
+    void pushBeyondCapacityDropsOldest() {
+        Timeline timeline = new Timeline(List.of(30L, 20L, 10L), 3);
+        timeline.push(40);
+        assertEquals(List.of(40L, 30L, 20L), timeline.page(Long.MAX_VALUE, 10));
+        // старее всего, что помещается, - не попадает
+        timeline.push(1);
+        assertEquals(List.of(40L, 30L, 20L), timeline.page(Long.MAX_VALUE, 10));
+    }
+
+    @Test
+    void growsPastInitialArray() {
+        Timeline timeline = new Timeline(List.of(), 100);
+        for (long id = 1; id <= 40; id++) {
+            timeline.push(id);
+        }
+        List<Long> page = timeline.page(Long.MAX_VALUE, 100);
+        assertEquals(40, page.size());
+        assertEquals(40L, page.get(0));
+        assertEquals(1L, page.get(39));
+    }
+
+    @Test
+    void pageStartsBelowCursor() {
+        Timeline timeline = new Timeline(List.of(90L, 70L, 50L, 30L, 10L), 10);
+        assertEquals(List.of(90L, 70L), timeline.page(Long.MAX_VALUE, 2));
+        assertEquals(List.of(50L, 30L), timeline.page(70, 2));
+        assertEquals(List.of(50L, 30L), timeline.page(60, 2));
+        assertEquals(List.of(), timeline.page(10, 2));
+    }
+
+    @Test
+    void removeFreesPageSlot() {
+        Timeline timeline = new Timeline(List.of(50L, 40L, 30L, 20L), 10);
+        timeline.remove(40);
+        timeline.remove(45);
+        assertEquals(List.of(50L, 30L, 20L), timeline.page(Long.MAX_VALUE, 3));
+        timeline.remove(20);
+        timeline.remove(50);
+        assertEquals(List.of(30L), timeline.page(Long.MAX_VALUE, 3));
+        timeline.push(60);
+        assertEquals(List.of(60L, 30L), timeline.page(Long.MAX_VALUE, 3));
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.instaKing.services;
+
+import com.example.instaKing.models.User;
+import com.example.instaKing.services.UserSearchIndex.Profile;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class UserSearchIndexTest {
+
+    @Test
+    void tokenizeNormalizes() {
+        assertEquals(List.of("анна", "семенова"), UserSearchIndex.tokenize("  Анна   Семёнова "));
+        assertEquals(List.of(), UserSearchIndex.tokenize(null));
+        assertEquals(List.of(), UserSearchIndex.tokenize("   "));
+    }
+
+    @Test
+    void profileTermsStartWithUsername() {
+        Profile profile = Profile.of(1, "Anna_K", "Anna", "Karenina", null);
+        assertArrayEquals(new String[]{"anna_k", "anna", "karenina"}, profile.terms());
+    }
+
+    @Test
+    void matchesAllRequiresEveryToken() {
+        Profile profile = Profile.of(1, "leo", "Лев", "Толстой Николаевич", null);
+        assertTrue(profile.matchesAll(List.of("лев", "тол")));
+        assertTrue(profile.matchesAll(List.of("ник")));
+        assertTrue(profile.matchesAll(List.of("le")));
+        assertFalse(profile.matchesAll(List.of("лев", "дост")));
+        // совпадение только с начала слова
+        assertFalse(profile.matchesAll(List.of("стой")));
+    }
+
+    @Test
+    void matchesAllEmptyTokens() {
+        assertTrue(Profile.of(1, "leo", null, null, null).matchesAll(List.of()));
+    }
+
+    private static User user(long id, String username, String firstname) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        user.setFirstname(firstname);
+        user.setLastname("");
+        return user;
+    }
+
+    private static List<String> usernames(List<Profile> profiles) {
+        return profiles.stream().map(Profile::username).toList();
+    }
+
+    @Test
+    void popularAccountsSurviveCandidateLimit() {
+        FollowGraphIndex graph = mock(FollowGraphIndex.class);
+        when(graph.countSubscribers(anyLong())).thenReturn(0);
+        when(graph.countSubscribers(100L)).thenReturn(5000);
+        when(graph.countSubscribers(101L)).thenReturn(300);
+        UserSearchIndex index = new UserSearchIndex(mock(JdbcTemplate.class), graph, 3, 60);
+        for (long id = 1; id <= 20; id++) {
+            index.index(user(id, "aa" + id, "x"));
+        }
+        // по алфавиту оба после всех aa*
+        index.index(user(100L, "zz_star", "Alice"));
+        index.index(user(101L, "zz_known", "Alex"));
+
+        List<String> found = usernames(index.search("a", null, 3));
+        assertTrue(found.containsAll(List.of("zz_star", "zz_known")), found.toString());
+    }
+
+    @Test
+    void mostFollowedIsOrderedAndDeduplicated() {
+        FollowGraphIndex graph = mock(FollowGraphIndex.class);
+        when(graph.countSubscribers(1L)).thenReturn(1);
+        when(graph.countSubscribers(2L)).thenReturn(7);
+        when(graph.countSubscribers(3L)).thenReturn(3);
+        UserSearchIndex index = new UserSearchIndex(mock(JdbcTemplate.class), graph, 2, 60);
+        // у первого два слова на "an"
+        index.index(user(1L, "anna", "Anna"));
+        index.index(user(2L, "andrew", "x"));
+        index.index(user(3L, "anton", "x"));
+
+        assertArrayEquals(new long[]{2L, 3L}, index.mostFollowed("an"));
+        assertArrayEquals(new long[]{2L}, index.mostFollowed("andr"));
+    }
+
+    @Test
+    void newProfileAppearsInCachedPrefix() {
+        FollowGraphIndex graph = mock(FollowGraphIndex.class);
+        UserSearchIndex index = new UserSearchIndex(mock(JdbcTemplate.class), graph, 10, 60);
+        index.index(user(1L, "boris", "x"));
+        assertEquals(List.of("boris"), usernames(index.search("bo", null, 10)));
+
+        index.index(user(2L, "bob", "x"));
+        assertEquals(List.of("bob", "boris"), usernames(index.search("bo", null, 10)));
+    }
+
+    @Test
+    void renamedProfileLeavesOldPrefix() {
+        FollowGraphIndex graph = mock(FollowGraphIndex.class);
+        UserSearchIndex index = new UserSearchIndex(mock(JdbcTemplate.class), graph, 10, 60);
+        index.index(user(1L, "boris", "x"));
+        assertEquals(1, index.search("bo", null, 10).size());
+
+        index.index(user(1L, "gleb", "x"));
+        assertEquals(List.of(), index.search("bo", null, 10));
+        assertEquals(List.of("gleb"), usernames(index.search("gl", null, 10)));
+    }
+}